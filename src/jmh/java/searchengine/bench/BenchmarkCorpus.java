@@ -0,0 +1,57 @@
+package searchengine.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Русский текст для бенчмарков и синтетические страницы, собранные из его предложений.
+ */
+final class BenchmarkCorpus {
+
+    static final String SITE_URL = "https://bench.example";
+    static final String SITE_NAME = "Bench";
+
+    private static final String RESOURCE = "/bench/text-ru.txt";
+
+    private BenchmarkCorpus() {
+    }
+
+    static String text() {
+        try (InputStream in = BenchmarkCorpus.class.getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Не найден ресурс " + RESOURCE);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static List<String> sentences() {
+        return Arrays.stream(text().split("(?<=[.!?])\\s+"))
+                .map(String::trim)
+                .filter(sentence -> !sentence.isEmpty())
+                .toList();
+    }
+
+    /**
+     * HTML-страница из случайно выбранных предложений; одинаковое зерно дает одинаковый корпус.
+     */
+    static String page(Random random, List<String> sentences, int sentenceCount) {
+        StringBuilder html = new StringBuilder("<html><head><title>")
+                .append(sentences.get(random.nextInt(sentences.size())))
+                .append("</title></head><body>");
+        for (int i = 0; i < sentenceCount; i++) {
+            if (i % 4 == 0) {
+                html.append(i == 0 ? "<p>" : "</p><p>");
+            }
+            html.append(sentences.get(random.nextInt(sentences.size()))).append(' ');
+        }
+        return html.append("</p></body></html>").toString();
+    }
+}
@@ -0,0 +1,77 @@
+package searchengine.bench;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import searchengine.dto.indexing.IndexingJobStatus;
+import searchengine.dto.indexing.JobState;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.services.IndexingService;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Сквозной прогон обходчика: IndexingService.startIndexing против SyntheticSite на H2.
+ * <p>
+ * Время обхода — длительность задачи индексации сайта от старта до переключения поколения.
+ * <p>
+ * Параметры: --pages (2000), --fan-out (8), --latency-ms (0), --error-rate (0.0), --seed (42).
+ */
+public final class CrawlBenchmark {
+
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(100);
+
+    private CrawlBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = BenchmarkApplication.options(args);
+        int pages = Integer.parseInt(options.getOrDefault("pages", "2000"));
+        int fanOut = Integer.parseInt(options.getOrDefault("fan-out", "8"));
+        Duration latency = Duration.ofMillis(Long.parseLong(options.getOrDefault("latency-ms", "0")));
+        double errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0.0"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+
+        try (SyntheticSite site = new SyntheticSite(pages, fanOut, latency, errorRate, seed);
+             ConfigurableApplicationContext context = BenchmarkApplication.start("crawl",
+                     Map.of(site.url(), "Synthetic"))) {
+            IndexingService indexingService = context.getBean(IndexingService.class);
+            PageRepository pageRepository = context.getBean(PageRepository.class);
+            LemmaRepository lemmaRepository = context.getBean(LemmaRepository.class);
+            IndexRepository indexRepository = context.getBean(IndexRepository.class);
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+            System.gc();
+            long peakHeap = memory.getHeapMemoryUsage().getUsed();
+            indexingService.startIndexing();
+            while (indexingService.isIndexing()) {
+                Thread.sleep(POLL_INTERVAL.toMillis());
+                peakHeap = Math.max(peakHeap, memory.getHeapMemoryUsage().getUsed());
+            }
+
+            IndexingJobStatus job = indexingService.jobs().get(0);
+            if (job.getState() != JobState.COMPLETED) {
+                throw new IllegalStateException("Индексация завершилась в состоянии " + job.getState()
+                        + ": " + job.getError());
+            }
+            double seconds = Math.max(job.getDurationMs(), 1) / 1e3;
+            long pageRows = pageRepository.count();
+            long lemmaRows = lemmaRepository.count();
+            long indexRows = indexRepository.count();
+            long rows = pageRows + lemmaRows + indexRows;
+
+            System.out.printf(Locale.ROOT, "%nСинтетический сайт: %d страниц (%d с ошибкой), fan-out %d, задержка %d мс%n",
+                    pages, site.errorPageCount(), fanOut, latency.toMillis());
+            System.out.printf(Locale.ROOT, "HTTP-запросов: %d, из них с ошибкой: %d%n", site.requests(), site.errors());
+            System.out.printf(Locale.ROOT, "Время обхода:  %.2f с%n", seconds);
+            System.out.printf(Locale.ROOT, "Страниц:       %d (%.1f стр/с)%n", pageRows, pageRows / seconds);
+            System.out.printf(Locale.ROOT, "Строк в БД:    %d (page %d, lemma %d, index_link %d), %.1f строк/с%n",
+                    rows, pageRows, lemmaRows, indexRows, rows / seconds);
+            System.out.printf(Locale.ROOT, "Пик кучи:      %.1f МБ%n", peakHeap / 1024.0 / 1024.0);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package searchengine.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import searchengine.util.LemmaFinder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лемматизация видимого текста страницы: полный проход по тексту из src/jmh/resources/bench/text-ru.txt.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LemmaFinderBenchmark {
+
+    private LemmaFinder lemmaFinder;
+    private String text;
+
+    @Setup
+    public void setUp() throws IOException {
+        lemmaFinder = new LemmaFinder();
+        text = BenchmarkCorpus.text();
+    }
+
+    @Benchmark
+    public Map<String, Integer> collectLemmas() {
+        return lemmaFinder.collectLemmas(text);
+    }
+
+    @Benchmark
+    public Set<String> getLemmaSet() {
+        return lemmaFinder.getLemmaSet(text);
+    }
+
+    @Benchmark
+    public List<LemmaFinder.WordToken> tokenize() {
+        return lemmaFinder.tokenize(text);
+    }
+}
@@ -0,0 +1,139 @@
+package searchengine.bench;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.model.SiteEntity;
+import searchengine.repositories.SiteRepository;
+import searchengine.util.PositionCodec;
+import searchengine.util.SitePurger;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Замер удаления сайта через SitePurger: сайт на 100 000 страниц (по умолчанию) генерируется прямо в H2,
+ * рядом — небольшой соседний сайт, который удаление не должно затронуть. Отчет — время удаления,
+ * строки в секунду и проверка, что от удаленного сайта ничего не осталось.
+ * <p>
+ * Параметры: --pages (100000), --postings-per-page (30), --vocabulary (20000), --chunk (размер диапазона
+ * страниц, по умолчанию из crawler-settings.purge-chunk-size), --seed (42).
+ */
+public final class PurgeBenchmark {
+
+    private static final String PURGED_URL = "https://purged.bench.example";
+    private static final String NEIGHBOUR_URL = "https://neighbour.bench.example";
+    private static final int NEIGHBOUR_PAGES = 100;
+    private static final int BATCH_SIZE = 10_000;
+
+    private PurgeBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = BenchmarkApplication.options(args);
+        int pages = Integer.parseInt(options.getOrDefault("pages", "100000"));
+        int postingsPerPage = Integer.parseInt(options.getOrDefault("postings-per-page", "30"));
+        int vocabulary = Integer.parseInt(options.getOrDefault("vocabulary", "20000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        String[] extraArgs = options.containsKey("chunk")
+                ? new String[]{"--crawler-settings.purge-chunk-size=" + options.get("chunk")}
+                : new String[0];
+
+        Map<String, String> sites = new LinkedHashMap<>();
+        sites.put(PURGED_URL, "Purged");
+        sites.put(NEIGHBOUR_URL, "Neighbour");
+        try (ConfigurableApplicationContext context = BenchmarkApplication.start("purge", sites, extraArgs)) {
+            JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+            long generateStarted = System.nanoTime();
+            long postings = generate(jdbc, 1, pages, postingsPerPage, vocabulary, 0, new Random(seed));
+            generate(jdbc, 2, NEIGHBOUR_PAGES, postingsPerPage, vocabulary, pages, new Random(seed + 1));
+            System.out.printf(Locale.ROOT, "Сгенерировано: %d страниц, %d лемм, %d записей index_link за %.1f с%n",
+                    pages, vocabulary, postings, (System.nanoTime() - generateStarted) / 1e9);
+
+            SiteEntity site = context.getBean(SiteRepository.class).findByUrlAndLiveTrue(PURGED_URL).orElseThrow();
+            SitePurger.Result result = context.getBean(SitePurger.class).purge(site);
+            long rows = result.pages() + result.lemmas() + result.indices();
+            System.out.printf(Locale.ROOT, "Удаление: %d страниц, %d лемм, %d записей индекса за %d мс, %.0f строк/с%n",
+                    result.pages(), result.lemmas(), result.indices(), result.millis(),
+                    rows / Math.max(result.millis() / 1000.0, 1e-3));
+
+            long leftPages = count(jdbc, "SELECT COUNT(*) FROM page WHERE site_id = 1");
+            long leftLemmas = count(jdbc, "SELECT COUNT(*) FROM lemma WHERE site_id = 1");
+            long neighbourPostings = count(jdbc, "SELECT COUNT(*) FROM index_link i JOIN page p ON p.id = i.page_id "
+                    + "WHERE p.site_id = 2");
+            System.out.printf(Locale.ROOT, "Осталось от сайта: %d страниц, %d лемм; у соседнего сайта %d записей индекса%n",
+                    leftPages, leftLemmas, neighbourPostings);
+            if (leftPages != 0 || leftLemmas != 0 || neighbourPostings == 0) {
+                throw new IllegalStateException("Удаление затронуло не те строки");
+            }
+        }
+    }
+
+    /**
+     * Страницы и леммы сайта нумеруются подряд начиная с offset + 1, как при последовательном обходе.
+     */
+    private static long generate(JdbcTemplate jdbc, int site, int pages, int postingsPerPage, int vocabulary,
+                                 int offset, Random random) {
+        jdbc.update("INSERT INTO site (id, status, status_time, url, name, live) VALUES (?, 'INDEXED', ?, ?, ?, TRUE)",
+                site, new Timestamp(System.currentTimeMillis()), site == 1 ? PURGED_URL : NEIGHBOUR_URL,
+                site == 1 ? "Purged" : "Neighbour");
+
+        List<Object[]> rows = new ArrayList<>(BATCH_SIZE);
+        long lemmaBase = (long) (site - 1) * vocabulary;
+        for (int lemma = 0; lemma < vocabulary; lemma++) {
+            rows.add(new Object[]{lemmaBase + lemma + 1, site, "лемма" + lemma, 1});
+            if (rows.size() == BATCH_SIZE) {
+                batch(jdbc, "INSERT INTO lemma (id, site_id, lemma, frequency) VALUES (?, ?, ?, ?)", rows);
+            }
+        }
+        batch(jdbc, "INSERT INTO lemma (id, site_id, lemma, frequency) VALUES (?, ?, ?, ?)", rows);
+
+        for (int page = offset + 1; page <= offset + pages; page++) {
+            rows.add(new Object[]{page, site, "/p/" + page, 200, "<html><body>страница " + page + "</body></html>",
+                    "INDEXED"});
+            if (rows.size() == BATCH_SIZE) {
+                batch(jdbc, "INSERT INTO page (id, site_id, path, code, content, status) VALUES (?, ?, ?, ?, ?, ?)", rows);
+            }
+        }
+        batch(jdbc, "INSERT INTO page (id, site_id, path, code, content, status) VALUES (?, ?, ?, ?, ?, ?)", rows);
+
+        long postings = 0;
+        long indexBase = (long) offset * postingsPerPage;
+        int perPage = Math.min(postingsPerPage, vocabulary);
+        for (int page = offset + 1; page <= offset + pages; page++) {
+            Set<Integer> lemmas = new LinkedHashSet<>();
+            while (lemmas.size() < perPage) {
+                lemmas.add(random.nextInt(vocabulary));
+            }
+            int position = 0;
+            for (int lemma : lemmas) {
+                rows.add(new Object[]{indexBase + ++postings, page, lemmaBase + lemma + 1, 1.0f,
+                        PositionCodec.encode(List.of(position++))});
+                if (rows.size() == BATCH_SIZE) {
+                    batch(jdbc, "INSERT INTO index_link (id, page_id, lemma_id, ranking, positions) "
+                            + "VALUES (?, ?, ?, ?, ?)", rows);
+                }
+            }
+        }
+        batch(jdbc, "INSERT INTO index_link (id, page_id, lemma_id, ranking, positions) VALUES (?, ?, ?, ?, ?)", rows);
+        return postings;
+    }
+
+    private static void batch(JdbcTemplate jdbc, String sql, List<Object[]> rows) {
+        if (!rows.isEmpty()) {
+            jdbc.batchUpdate(sql, rows);
+            rows.clear();
+        }
+    }
+
+    private static long count(JdbcTemplate jdbc, String sql) {
+        Long count = jdbc.queryForObject(sql, Long.class);
+        return count == null ? 0 : count;
+    }
+}
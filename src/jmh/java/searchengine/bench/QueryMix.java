@@ -0,0 +1,96 @@
+package searchengine.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Записанная смесь запросов: строки "вес, категория, сайт, offset, запрос" через табуляцию.
+ * Сайт "*" — поиск по всем сайтам, иначе номер сайта в списке indexing-settings, начиная с 1.
+ */
+final class QueryMix {
+
+    private static final String DEFAULT_RESOURCE = "/bench/query-mix.tsv";
+
+    record Query(String category, Integer site, int offset, String text) {
+
+        String toUri(String baseUrl, List<String> siteUrls, int limit) {
+            StringBuilder uri = new StringBuilder(baseUrl)
+                    .append("/api/search?query=").append(URLEncoder.encode(text, StandardCharsets.UTF_8))
+                    .append("&offset=").append(offset)
+                    .append("&limit=").append(limit);
+            if (site != null) {
+                uri.append("&site=").append(URLEncoder.encode(siteUrls.get(site - 1), StandardCharsets.UTF_8));
+            }
+            return uri.toString();
+        }
+    }
+
+    private final List<Query> queries = new ArrayList<>();
+    private final List<Integer> cumulativeWeights = new ArrayList<>();
+    private int totalWeight;
+
+    static QueryMix load(String path) {
+        try (InputStream in = path == null
+                ? QueryMix.class.getResourceAsStream(DEFAULT_RESOURCE)
+                : Files.newInputStream(Path.of(path))) {
+            if (in == null) {
+                throw new IllegalStateException("Не найден ресурс " + DEFAULT_RESOURCE);
+            }
+            QueryMix mix = new QueryMix();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t", 5);
+                if (fields.length != 5) {
+                    throw new IllegalArgumentException("Некорректная строка смеси запросов: " + line);
+                }
+                mix.add(Integer.parseInt(fields[0]), new Query(fields[1],
+                        fields[2].equals("*") ? null : Integer.valueOf(fields[2]),
+                        Integer.parseInt(fields[3]), fields[4]));
+            }
+            if (mix.queries.isEmpty()) {
+                throw new IllegalArgumentException("Смесь запросов пуста");
+            }
+            return mix;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    Query next(Random random) {
+        int target = random.nextInt(totalWeight);
+        for (int i = 0; i < queries.size(); i++) {
+            if (target < cumulativeWeights.get(i)) {
+                return queries.get(i);
+            }
+        }
+        return queries.get(queries.size() - 1);
+    }
+
+    int maxSite() {
+        return queries.stream().map(Query::site).filter(site -> site != null).mapToInt(Integer::intValue)
+                .max().orElse(0);
+    }
+
+    private void add(int weight, Query query) {
+        if (weight <= 0) {
+            return;
+        }
+        totalWeight += weight;
+        queries.add(query);
+        cumulativeWeights.add(totalWeight);
+    }
+}
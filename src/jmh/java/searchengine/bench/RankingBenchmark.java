@@ -0,0 +1,58 @@
+package searchengine.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import searchengine.dto.search.SearchRequest;
+import searchengine.dto.search.SearchResponse;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ранжирование без кэша: декодирование позиций, релевантность с учетом близости слов, фразовый фильтр
+ * и сортировка кандидатов. Сниппеты не строятся (limit = 0).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RankingBenchmark {
+
+    @Param({"1000", "10000"})
+    public int pages;
+
+    @Param({"поисковый запрос страницы", "\"поисковый индекс\""})
+    public String query;
+
+    private SearchFixture fixture;
+    private SearchRequest request;
+
+    @Setup
+    public void setUp() throws IOException {
+        fixture = new SearchFixture(pages);
+        request = SearchFixture.request(query, 0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public SearchResponse rankCandidates() {
+        fixture.cacheManagement.getSearchResultsCache().invalidateAll();
+        return fixture.searchService.search(request);
+    }
+}
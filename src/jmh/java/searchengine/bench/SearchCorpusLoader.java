@@ -0,0 +1,145 @@
+package searchengine.bench;
+
+import lombok.RequiredArgsConstructor;
+import searchengine.model.IndexEntity;
+import searchengine.model.LemmaEntity;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+import searchengine.model.Status;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.util.LemmaFinder;
+import searchengine.util.PositionCodec;
+import searchengine.util.TokenOffsets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Загрузка синтетического корпуса прямо в репозитории, минуя обход: те же леммы, позиции и разметка,
+ * что пишет WebPageIndexerTask.
+ * <p>
+ * Предложения выбираются по закону Ципфа в порядке текста: слова первых предложений встречаются
+ * почти на каждой странице, слова последних — на единицах, что дает и частые, и редкие леммы.
+ */
+@RequiredArgsConstructor
+final class SearchCorpusLoader {
+
+    private static final int SENTENCES_PER_PAGE = 24;
+    private static final int BATCH_SIZE = 1000;
+
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final IndexRepository indexRepository;
+    private final LemmaFinder lemmaFinder;
+
+    private record ParsedPage(String html, List<LemmaFinder.WordToken> tokens, Map<String, List<Integer>> positions) {
+    }
+
+    /**
+     * @return количество записанных строк index_link
+     */
+    long load(String siteUrl, String siteName, int pageCount, long seed) {
+        SiteEntity site = new SiteEntity();
+        site.setUrl(siteUrl);
+        site.setName(siteName);
+        site.setStatus(Status.INDEXED);
+        site.setStatusTime(new Date());
+        site.setLive(true);
+        siteRepository.save(site);
+
+        List<String> sentences = BenchmarkCorpus.sentences();
+        double[] cumulative = zipfCumulative(sentences.size());
+        Random random = new Random(seed);
+
+        List<ParsedPage> parsed = new ArrayList<>(pageCount);
+        Map<String, LemmaEntity> lemmas = new HashMap<>();
+        for (int i = 0; i < pageCount; i++) {
+            String html = page(random, sentences, cumulative);
+            List<LemmaFinder.WordToken> tokens = lemmaFinder.tokenize(lemmaFinder.cleanHtml(html));
+            Map<String, List<Integer>> positions = lemmaFinder.groupPositions(tokens);
+            for (Map.Entry<String, List<Integer>> entry : positions.entrySet()) {
+                LemmaEntity lemma = lemmas.computeIfAbsent(entry.getKey(), key -> {
+                    LemmaEntity entity = new LemmaEntity();
+                    entity.setLemma(key);
+                    entity.setSite(site);
+                    return entity;
+                });
+                lemma.setFrequency(lemma.getFrequency() + entry.getValue().size());
+            }
+            parsed.add(new ParsedPage(html, tokens, positions));
+        }
+        lemmaRepository.saveAll(lemmas.values());
+
+        Map<String, Long> lemmaIds = new HashMap<>();
+        lemmas.forEach((text, lemma) -> lemmaIds.put(text, lemma.getId()));
+
+        long postings = 0;
+        for (int from = 0; from < parsed.size(); from += BATCH_SIZE) {
+            List<ParsedPage> batch = parsed.subList(from, Math.min(parsed.size(), from + BATCH_SIZE));
+            List<PageEntity> pages = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                PageEntity page = new PageEntity();
+                page.setSite(site);
+                page.setPath("/p/" + (from + i));
+                page.setCode(200);
+                page.setContent(batch.get(i).html());
+                page.setTokenOffsets(TokenOffsets.encode(batch.get(i).tokens(), lemmaIds));
+                page.setStatus(Status.INDEXED);
+                pages.add(page);
+            }
+            pageRepository.saveAll(pages);
+
+            List<IndexEntity> indices = new ArrayList<>();
+            for (int i = 0; i < batch.size(); i++) {
+                for (Map.Entry<String, List<Integer>> entry : batch.get(i).positions().entrySet()) {
+                    IndexEntity index = new IndexEntity();
+                    index.setPage(pages.get(i));
+                    index.setLemma(lemmas.get(entry.getKey()));
+                    index.setRanking((float) entry.getValue().size());
+                    index.setPositions(PositionCodec.encode(entry.getValue()));
+                    indices.add(index);
+                }
+            }
+            indexRepository.saveAll(indices);
+            postings += indices.size();
+        }
+        return postings;
+    }
+
+    private static String page(Random random, List<String> sentences, double[] cumulative) {
+        StringBuilder html = new StringBuilder("<html><head><title>")
+                .append(sentences.get(pick(random, cumulative)))
+                .append("</title></head><body><p>");
+        for (int i = 0; i < SENTENCES_PER_PAGE; i++) {
+            html.append(sentences.get(pick(random, cumulative))).append(' ');
+        }
+        return html.append("</p></body></html>").toString();
+    }
+
+    private static double[] zipfCumulative(int size) {
+        double[] cumulative = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < size; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int pick(Random random, double[] cumulative) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1);
+    }
+}
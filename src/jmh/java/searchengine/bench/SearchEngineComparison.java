@@ -0,0 +1,137 @@
+package searchengine.bench;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.dto.search.SearchRequest;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.LuceneSearchService;
+import searchengine.services.SearchService;
+import searchengine.services.interfaces.SearchServiceInterface;
+import searchengine.util.LemmaFinder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Сравнение поисковых движков на одном корпусе: JPA-поиск по таблицам H2 и поиск по локальному индексу Lucene.
+ * Обе реализации получают одну и ту же последовательность запросов из смеси (src/jmh/resources/bench/query-mix.tsv
+ * или --mix=файл) в одном потоке, кэш результатов поиска отключен. Отчет — p50/p95/p99 задержки по движкам,
+ * время построения индекса Lucene и объем данных: таблицы lemma, index_link и page в H2 против файлов Lucene.
+ * <p>
+ * Параметры: --sites (2), --pages (2000 на сайт), --queries (2000), --warmup (500), --limit (10), --seed (42),
+ * --mix (встроенная смесь).
+ */
+public final class SearchEngineComparison {
+
+    private SearchEngineComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = BenchmarkApplication.options(args);
+        int siteCount = Integer.parseInt(options.getOrDefault("sites", "2"));
+        int pages = Integer.parseInt(options.getOrDefault("pages", "2000"));
+        int queries = Integer.parseInt(options.getOrDefault("queries", "2000"));
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "500"));
+        int limit = Integer.parseInt(options.getOrDefault("limit", "10"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        QueryMix mix = QueryMix.load(options.get("mix"));
+        if (mix.maxSite() > siteCount) {
+            throw new IllegalArgumentException("Смесь запросов ссылается на сайт " + mix.maxSite()
+                    + ", а загружено сайтов: " + siteCount);
+        }
+
+        Map<String, String> sites = new LinkedHashMap<>();
+        for (int i = 1; i <= siteCount; i++) {
+            sites.put("https://site" + i + ".bench.example", "Synthetic " + i);
+        }
+        List<String> siteUrls = new ArrayList<>(sites.keySet());
+        Path indexPath = Files.createTempDirectory("lucene-bench");
+
+        try (ConfigurableApplicationContext context = BenchmarkApplication.start("engines", sites,
+                "--search-settings.engine=lucene",
+                "--search-settings.lucene-index-path=" + indexPath,
+                "--cache-settings.search-results=0B")) {
+            SearchCorpusLoader loader = new SearchCorpusLoader(context.getBean(SiteRepository.class),
+                    context.getBean(PageRepository.class), context.getBean(LemmaRepository.class),
+                    context.getBean(IndexRepository.class), context.getBean(LemmaFinder.class));
+            for (int i = 0; i < siteUrls.size(); i++) {
+                loader.load(siteUrls.get(i), "Synthetic " + (i + 1), pages, seed + i);
+            }
+
+            LuceneSearchService lucene = context.getBean(LuceneSearchService.class);
+            long buildStarted = System.nanoTime();
+            lucene.rebuild().join();
+            double buildSeconds = (System.nanoTime() - buildStarted) / 1e9;
+
+            Map<String, SearchServiceInterface> engines = new LinkedHashMap<>();
+            engines.put("jpa", context.getBean(SearchService.class));
+            engines.put("lucene", lucene);
+
+            System.out.printf(Locale.ROOT, "Корпус: %d сайт(ов) по %d страниц; индекс Lucene построен за %.1f с%n",
+                    siteCount, pages, buildSeconds);
+            System.out.printf(Locale.ROOT, "%-8s %10s %10s %10s %10s %12s%n", "движок", "запросов",
+                    "p50, мс", "p95, мс", "p99, мс", "найдено");
+            engines.forEach((name, engine) -> run(name, engine, mix, siteUrls, warmup, queries, limit, seed));
+
+            JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+            long lemmaBytes = tableBytes(jdbc, "LEMMA");
+            long postingBytes = tableBytes(jdbc, "INDEX_LINK");
+            long pageBytes = tableBytes(jdbc, "PAGE");
+            System.out.printf(Locale.ROOT, "%nОбъем: lemma %.1f МБ, index_link %.1f МБ, page %.1f МБ; Lucene %.1f МБ%n",
+                    lemmaBytes / 1e6, postingBytes / 1e6, pageBytes / 1e6, lucene.sizeBytes() / 1e6);
+        }
+    }
+
+    private static void run(String name, SearchServiceInterface engine, QueryMix mix, List<String> siteUrls,
+                            int warmup, int queries, int limit, long seed) {
+        Random random = new Random(seed);
+        long[] latencies = new long[queries];
+        long found = 0;
+        for (int i = 0; i < warmup + queries; i++) {
+            QueryMix.Query query = mix.next(random);
+            SearchRequest request = new SearchRequest();
+            request.setQuery(query.text());
+            request.setSite(query.site() == null ? null : siteUrls.get(query.site() - 1));
+            request.setOffset(query.offset());
+            request.setLimit(limit);
+
+            long start = System.nanoTime();
+            int count = engine.search(request).getCount();
+            long elapsed = System.nanoTime() - start;
+            if (i >= warmup) {
+                latencies[i - warmup] = elapsed;
+                found += count;
+            }
+        }
+        Arrays.sort(latencies);
+        System.out.printf(Locale.ROOT, "%-8s %10d %10.2f %10.2f %10.2f %12d%n", name, queries,
+                percentile(latencies, 0.50), percentile(latencies, 0.95), percentile(latencies, 0.99), found);
+    }
+
+    /**
+     * Оценка H2 для таблицы вместе с ее индексами.
+     */
+    private static long tableBytes(JdbcTemplate jdbc, String table) {
+        Long bytes = jdbc.queryForObject("SELECT DISK_SPACE_USED(?)", Long.class, table);
+        return bytes == null ? 0 : bytes;
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+}
@@ -0,0 +1,174 @@
+package searchengine.bench;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import searchengine.config.CacheSettings;
+import searchengine.config.SearchSettings;
+import searchengine.config.Site;
+import searchengine.config.SitesList;
+import searchengine.dto.search.IndexPosting;
+import searchengine.dto.search.SearchRequest;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+import searchengine.model.Status;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.services.SearchService;
+import searchengine.util.CacheManagement;
+import searchengine.util.IndexSnapshot;
+import searchengine.util.LemmaFinder;
+import searchengine.util.PositionCodec;
+import searchengine.util.SearchExecutor;
+import searchengine.util.TokenOffsets;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * SearchService над синтетическим корпусом в памяти. Репозитории отвечают из заранее построенных
+ * структур, поэтому измеряется только работа сервиса: ранжирование, сортировка и сниппеты.
+ */
+final class SearchFixture {
+
+    private static final int SENTENCES_PER_PAGE = 24;
+
+    final SearchService searchService;
+    final CacheManagement cacheManagement;
+    private final SearchExecutor searchExecutor;
+
+    private final Map<Integer, PageEntity> pages = new HashMap<>();
+    private final Map<Integer, List<IndexPosting>> postingsByPage = new HashMap<>();
+    private final Map<String, Set<Integer>> pagesByLemma = new HashMap<>();
+
+    SearchFixture(int pageCount) throws IOException {
+        LemmaFinder lemmaFinder = new LemmaFinder();
+        buildCorpus(lemmaFinder, pageCount);
+
+        LemmaRepository lemmaRepository = mock(LemmaRepository.class);
+        when(lemmaRepository.countByLemma(anyString())).thenAnswer(invocation ->
+                pagesByLemma.getOrDefault(invocation.<String>getArgument(0), Set.of()).size());
+
+        PageRepository pageRepository = mock(PageRepository.class);
+        when(pageRepository.findPageIdsByLemmasAndSite(anyList(), anyString(), anyInt())).thenAnswer(invocation ->
+                findPageIds(invocation.getArgument(0)));
+        when(pageRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<PageEntity> found = new ArrayList<>();
+            for (Integer id : invocation.<Iterable<Integer>>getArgument(0)) {
+                PageEntity page = pages.get(id);
+                if (page != null) {
+                    found.add(page);
+                }
+            }
+            return found;
+        });
+
+        IndexRepository indexRepository = mock(IndexRepository.class);
+        when(indexRepository.findPostingsByPageIdsAndLemmas(anyList(), anyList())).thenAnswer(invocation ->
+                findPostings(invocation.getArgument(0), invocation.getArgument(1)));
+
+        Site site = new Site();
+        site.setUrl(BenchmarkCorpus.SITE_URL);
+        site.setName(BenchmarkCorpus.SITE_NAME);
+        SitesList sitesList = new SitesList();
+        sitesList.setSites(List.of(site));
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SearchSettings searchSettings = new SearchSettings();
+        searchSettings.setSnapshotEnabled(false);
+        this.cacheManagement = new CacheManagement(new CacheSettings(), meterRegistry);
+        this.searchExecutor = new SearchExecutor(searchSettings, meterRegistry);
+        this.searchService = new SearchService(lemmaRepository, pageRepository, indexRepository, lemmaFinder,
+                sitesList, cacheManagement, searchExecutor, searchSettings,
+                new IndexSnapshot(searchSettings, null, pageRepository, lemmaRepository, indexRepository));
+    }
+
+    static SearchRequest request(String query, int limit) {
+        SearchRequest request = new SearchRequest();
+        request.setQuery(query);
+        request.setSite(BenchmarkCorpus.SITE_URL);
+        request.setLimit(limit);
+        return request;
+    }
+
+    void close() {
+        searchExecutor.shutdown();
+    }
+
+    private void buildCorpus(LemmaFinder lemmaFinder, int pageCount) {
+        List<String> sentences = BenchmarkCorpus.sentences();
+        Random random = new Random(42);
+        SiteEntity site = new SiteEntity();
+        site.setId(1);
+        site.setUrl(BenchmarkCorpus.SITE_URL);
+        site.setName(BenchmarkCorpus.SITE_NAME);
+        site.setStatus(Status.INDEXED);
+        Map<String, Long> lemmaIds = new HashMap<>();
+
+        for (int id = 1; id <= pageCount; id++) {
+            String html = BenchmarkCorpus.page(random, sentences, SENTENCES_PER_PAGE);
+            List<LemmaFinder.WordToken> tokens = lemmaFinder.tokenize(lemmaFinder.cleanHtml(html));
+            List<IndexPosting> postings = new ArrayList<>();
+            for (Map.Entry<String, List<Integer>> entry : lemmaFinder.groupPositions(tokens).entrySet()) {
+                String lemma = entry.getKey();
+                Long lemmaId = lemmaIds.get(lemma);
+                if (lemmaId == null) {
+                    lemmaId = (long) lemmaIds.size() + 1;
+                    lemmaIds.put(lemma, lemmaId);
+                }
+                postings.add(new IndexPosting(id, lemmaId, lemma, (float) entry.getValue().size(),
+                        PositionCodec.encode(entry.getValue())));
+                pagesByLemma.computeIfAbsent(lemma, key -> new HashSet<>()).add(id);
+            }
+
+            PageEntity page = new PageEntity();
+            page.setId(id);
+            page.setSite(site);
+            page.setPath("/page/" + id);
+            page.setCode(200);
+            page.setContent(html);
+            page.setTokenOffsets(TokenOffsets.encode(tokens, lemmaIds));
+            page.setStatus(Status.INDEXED);
+            pages.put(id, page);
+            postingsByPage.put(id, postings);
+        }
+    }
+
+    private List<Integer> findPageIds(List<String> lemmas) {
+        Set<Integer> result = null;
+        for (String lemma : lemmas) {
+            Set<Integer> lemmaPages = pagesByLemma.getOrDefault(lemma, Set.of());
+            if (result == null) {
+                result = new HashSet<>(lemmaPages);
+            } else {
+                result.retainAll(lemmaPages);
+            }
+        }
+        return result == null ? List.of() : new ArrayList<>(result);
+    }
+
+    private List<IndexPosting> findPostings(List<Integer> pageIds, List<String> lemmas) {
+        Set<String> lemmaSet = new HashSet<>(lemmas);
+        List<IndexPosting> found = new ArrayList<>();
+        for (Integer pageId : pageIds) {
+            for (IndexPosting posting : postingsByPage.getOrDefault(pageId, List.of())) {
+                if (lemmaSet.contains(posting.lemma())) {
+                    found.add(posting);
+                }
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,164 @@
+package searchengine.bench;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.util.LemmaFinder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный прогон /api/search: синтетический корпус загружается в H2, затем записанная смесь запросов
+ * (src/jmh/resources/bench/query-mix.tsv или --mix=файл) воспроизводится с заданной конкурентностью.
+ * Задержки измеряются на клиенте после прогрева; отчет — p50/p95/p99 и пропускная способность,
+ * в целом и по категориям смеси.
+ * <p>
+ * Параметры: --sites (2), --pages (2000 на сайт), --concurrency (16), --warmup-s (10), --duration-s (30),
+ * --limit (10), --seed (42), --mix (встроенная смесь), --no-cache (без кэша результатов поиска).
+ */
+public final class SearchLoadTest {
+
+    private static final String ALL = "all";
+
+    private SearchLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = BenchmarkApplication.options(args);
+        int siteCount = Integer.parseInt(options.getOrDefault("sites", "2"));
+        int pages = Integer.parseInt(options.getOrDefault("pages", "2000"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "16"));
+        Duration warmup = Duration.ofSeconds(Long.parseLong(options.getOrDefault("warmup-s", "10")));
+        Duration duration = Duration.ofSeconds(Long.parseLong(options.getOrDefault("duration-s", "30")));
+        int limit = Integer.parseInt(options.getOrDefault("limit", "10"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        boolean noCache = Boolean.parseBoolean(options.getOrDefault("no-cache", "false"));
+        QueryMix mix = QueryMix.load(options.get("mix"));
+        if (mix.maxSite() > siteCount) {
+            throw new IllegalArgumentException("Смесь запросов ссылается на сайт " + mix.maxSite()
+                    + ", а загружено сайтов: " + siteCount);
+        }
+
+        Map<String, String> sites = new LinkedHashMap<>();
+        for (int i = 1; i <= siteCount; i++) {
+            sites.put("https://site" + i + ".bench.example", "Synthetic " + i);
+        }
+        List<String> siteUrls = new ArrayList<>(sites.keySet());
+        String[] extraArgs = noCache ? new String[]{"--cache-settings.search-results=0B"} : new String[0];
+
+        try (ConfigurableApplicationContext context = BenchmarkApplication.start("search", sites, extraArgs)) {
+            SearchCorpusLoader loader = new SearchCorpusLoader(context.getBean(SiteRepository.class),
+                    context.getBean(PageRepository.class), context.getBean(LemmaRepository.class),
+                    context.getBean(IndexRepository.class), context.getBean(LemmaFinder.class));
+            long loadStarted = System.nanoTime();
+            long postings = 0;
+            for (int i = 0; i < siteUrls.size(); i++) {
+                postings += loader.load(siteUrls.get(i), "Synthetic " + (i + 1), pages, seed + i);
+            }
+            System.out.printf(Locale.ROOT, "Корпус загружен: %d сайт(ов) по %d страниц, %d записей index_link, %.1f с%n",
+                    siteCount, pages, postings, (System.nanoTime() - loadStarted) / 1e9);
+
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            run(baseUrl, siteUrls, mix, concurrency, warmup, duration, limit, seed);
+        }
+    }
+
+    private static void run(String baseUrl, List<String> siteUrls, QueryMix mix, int concurrency,
+                            Duration warmup, Duration duration, int limit, long seed) throws InterruptedException {
+        ConcurrentMap<String, Collection<Long>> latencies = new ConcurrentHashMap<>();
+        ConcurrentMap<Integer, AtomicLong> statuses = new ConcurrentHashMap<>();
+        AtomicLong failures = new AtomicLong();
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureTo = measureFrom + duration.toNanos();
+
+        try (HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+             ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int worker = 0; worker < concurrency; worker++) {
+                Random random = new Random(seed * 1_000_003 + worker);
+                workers.submit(() -> {
+                    while (System.nanoTime() < measureTo) {
+                        QueryMix.Query query = mix.next(random);
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(query.toUri(baseUrl, siteUrls, limit)))
+                                .timeout(Duration.ofSeconds(30))
+                                .GET()
+                                .build();
+                        long start = System.nanoTime();
+                        int status;
+                        try {
+                            status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        } catch (Exception e) {
+                            status = -1;
+                        }
+                        long end = System.nanoTime();
+                        if (start < measureFrom || end > measureTo) {
+                            continue;
+                        }
+                        if (status == -1) {
+                            failures.incrementAndGet();
+                            continue;
+                        }
+                        statuses.computeIfAbsent(status, key -> new AtomicLong()).incrementAndGet();
+                        if (status == 200) {
+                            latencies.computeIfAbsent(ALL, key -> new ConcurrentLinkedQueue<>()).add(end - start);
+                            latencies.computeIfAbsent(query.category(), key -> new ConcurrentLinkedQueue<>())
+                                    .add(end - start);
+                        }
+                    }
+                });
+            }
+        }
+
+        double seconds = duration.toNanos() / 1e9;
+        System.out.printf(Locale.ROOT, "%nКонкурентность %d, прогрев %d с, измерение %d с%n",
+                concurrency, warmup.toSeconds(), duration.toSeconds());
+        System.out.printf(Locale.ROOT, "Коды ответов: %s, сетевых ошибок: %d%n", new TreeMap<>(statuses), failures.get());
+        System.out.printf(Locale.ROOT, "%-10s %10s %10s %10s %10s %10s%n", "категория", "запросов", "rps",
+                "p50, мс", "p95, мс", "p99, мс");
+        report(ALL, latencies.get(ALL), seconds);
+        new TreeMap<>(latencies).forEach((category, values) -> {
+            if (!category.equals(ALL)) {
+                report(category, values, seconds);
+            }
+        });
+    }
+
+    private static void report(String category, Collection<Long> values, double seconds) {
+        if (values == null || values.isEmpty()) {
+            System.out.printf(Locale.ROOT, "%-10s %10d%n", category, 0);
+            return;
+        }
+        long[] sorted = values.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        System.out.printf(Locale.ROOT, "%-10s %10d %10.1f %10.2f %10.2f %10.2f%n", category, sorted.length,
+                sorted.length / seconds, percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99));
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+}
@@ -0,0 +1,60 @@
+package searchengine.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import searchengine.dto.search.SearchRequest;
+import searchengine.dto.search.SearchResponse;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение страницы выдачи при ранжировании из кэша: разбор HTML, выбор окна сниппета
+ * (createSnippet) и подсветка слов запроса (highlightKeywords) для limit результатов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnippetBenchmark {
+
+    private static final int PAGES = 1000;
+
+    @Param({"поисковый запрос страницы", "\"поисковый индекс\""})
+    public String query;
+
+    @Param({"10"})
+    public int limit;
+
+    private SearchFixture fixture;
+    private SearchRequest request;
+
+    @Setup
+    public void setUp() throws IOException {
+        fixture = new SearchFixture(PAGES);
+        request = SearchFixture.request(query, limit);
+        fixture.searchService.search(request);
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.close();
+    }
+
+    @Benchmark
+    public SearchResponse renderSnippets() {
+        return fixture.searchService.search(request);
+    }
+}
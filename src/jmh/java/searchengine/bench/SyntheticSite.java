@@ -0,0 +1,164 @@
+package searchengine.bench;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальный HTTP-сервер с детерминированным синтетическим сайтом: страницы /p/0 … /p/{pageCount - 1},
+ * каждая ссылается на следующую (весь сайт достижим с корня) и еще на fanOut случайных страниц.
+ * Один и тот же seed дает один и тот же граф, текст и набор ошибочных страниц.
+ */
+@Slf4j
+public final class SyntheticSite implements AutoCloseable {
+
+    private static final int SENTENCES_PER_PAGE = 24;
+
+    private final int pageCount;
+    private final int fanOut;
+    private final Duration latency;
+    private final double errorRate;
+    private final long seed;
+    private final List<String> sentences;
+    private final HttpServer server;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public SyntheticSite(int pageCount, int fanOut, Duration latency, double errorRate, long seed) throws IOException {
+        if (pageCount < 1) {
+            throw new IllegalArgumentException("Количество страниц должно быть положительным");
+        }
+        this.pageCount = pageCount;
+        this.fanOut = fanOut;
+        this.latency = latency;
+        this.errorRate = errorRate;
+        this.seed = seed;
+        this.sentences = BenchmarkCorpus.sentences();
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        log.info("Синтетический сайт запущен: {} ({} страниц)", url(), pageCount);
+    }
+
+    public String url() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/";
+    }
+
+    public int pageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Количество страниц, отдаваемых с ошибкой; они не попадают в индекс.
+     */
+    public int errorPageCount() {
+        int count = 0;
+        for (int page = 0; page < pageCount; page++) {
+            if (isErrorPage(page)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long errors() {
+        return errors.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            pause();
+            int page = pageNumber(exchange.getRequestURI().getPath());
+            if (page < 0) {
+                respond(exchange, 404, "<html><body>Страница не найдена</body></html>");
+            } else if (isErrorPage(page)) {
+                errors.incrementAndGet();
+                respond(exchange, 500, "<html><body>Внутренняя ошибка сервера</body></html>");
+            } else {
+                respond(exchange, 200, render(page));
+            }
+        }
+    }
+
+    private int pageNumber(String path) {
+        if (path.equals("/")) {
+            return 0;
+        }
+        if (!path.startsWith("/p/")) {
+            return -1;
+        }
+        try {
+            int page = Integer.parseInt(path.substring(3));
+            return page >= 0 && page < pageCount ? page : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private boolean isErrorPage(int page) {
+        return page != 0 && new SplittableRandom(seed * 31 + page).nextDouble() < errorRate;
+    }
+
+    private String render(int page) {
+        Random random = new Random(seed ^ (page * 0x9E3779B97F4A7C15L));
+        StringBuilder html = new StringBuilder("<html><head><title>")
+                .append(sentences.get(random.nextInt(sentences.size())))
+                .append("</title></head><body><nav>");
+        if (page + 1 < pageCount) {
+            html.append("<a href=\"/p/").append(page + 1).append("\">Далее</a> ");
+        }
+        for (int i = 0; i < fanOut; i++) {
+            int target = random.nextInt(pageCount);
+            html.append("<a href=\"/p/").append(target).append("\">Страница ").append(target).append("</a> ");
+        }
+        html.append("</nav><p>");
+        for (int i = 0; i < SENTENCES_PER_PAGE; i++) {
+            html.append(sentences.get(random.nextInt(sentences.size()))).append(' ');
+        }
+        return html.append("</p></body></html>").toString();
+    }
+
+    private void pause() {
+        if (latency.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "cache-settings")
+public class CacheSettings {
+    private DataSize searchResults = DataSize.ofMegabytes(64);
+    private DataSize crawlLemmas = DataSize.ofMegabytes(64);
+    private Duration expireAfterAccess = Duration.ofMinutes(10);
+}
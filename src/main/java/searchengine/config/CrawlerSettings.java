@@ -0,0 +1,30 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "crawler-settings")
+public class CrawlerSettings {
+    private Duration progressInterval = Duration.ofSeconds(1);
+    private int purgeChunkSize = 200;
+    private int initialConcurrency = 2;
+    private int maxConcurrency = 16;
+    private double latencyTolerance = 1.5;
+    private double decreaseFactor = 0.7;
+    private double timeoutFactor = 10;
+    private Duration minTimeout = Duration.ofSeconds(2);
+    private Duration maxTimeout = Duration.ofSeconds(10);
+    private Duration maxRetryAfter = Duration.ofMinutes(5);
+    private int maxRetries = 2;
+    private int crawlWorkers = 8;
+    private int maxPages = 0;
+    private int maxDepth = 0;
+    private boolean useSitemap = true;
+}
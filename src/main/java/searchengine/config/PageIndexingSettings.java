@@ -0,0 +1,19 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "page-indexing-settings")
+public class PageIndexingSettings {
+    private int maxBatchSize = 1000;
+    private int fetchConcurrency = 16;
+    private int writeBatchSize = 100;
+    private Duration jobRetention = Duration.ofHours(1);
+}
@@ -0,0 +1,36 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "search-settings")
+public class SearchSettings {
+    private int maxConcurrentQueries = 16;
+    private int maxQueuedQueries = 64;
+    private Duration queueTimeout = Duration.ofSeconds(2);
+    private Duration deadline = Duration.ofSeconds(10);
+    private int renderThreads = Runtime.getRuntime().availableProcessors();
+    private int renderQueueSize = 1000;
+    private Duration slowQueryThreshold = Duration.ofSeconds(1);
+
+    /**
+     * Поисковый движок: jpa — индекс в таблицах БД, lucene — локальный индекс Lucene в luceneIndexPath.
+     */
+    private String engine = "jpa";
+    private Path luceneIndexPath = Path.of("data", "lucene-index");
+
+    /**
+     * Снимок индекса для движка jpa: файл, отображаемый в память, и задержка его перезаписи после изменений.
+     */
+    private boolean snapshotEnabled = true;
+    private Path snapshotPath = Path.of("data", "index-snapshot.seg");
+    private Duration snapshotDelay = Duration.ofSeconds(30);
+}
@@ -8,4 +8,12 @@ import lombok.Setter;
 public class Site {
     private String url;
     private String name;
+    private SiteSchedule schedule;
+
+    /**
+     * Бюджет страниц полного обхода и наибольшая глубина обхода сайта; если не заданы —
+     * crawler-settings.max-pages и max-depth.
+     */
+    private Integer maxPages;
+    private Integer maxDepth;
 }
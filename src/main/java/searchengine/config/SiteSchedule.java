@@ -0,0 +1,20 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.Duration;
+
+/**
+ * Расписание инкрементальной переиндексации сайта: интервал или cron-выражение Spring
+ * (секунды, минуты, часы, день месяца, месяц, день недели). Из нескольких готовых к запуску сайтов
+ * первым берется сайт с большим приоритетом.
+ */
+@Setter
+@Getter
+public class SiteSchedule {
+    private Duration interval;
+    private String cron;
+    private int maxPages = 500;
+    private int priority = 0;
+}
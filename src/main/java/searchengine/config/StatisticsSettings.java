@@ -0,0 +1,16 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Setter
+@Getter
+@Configuration
+@ConfigurationProperties(prefix = "statistics-settings")
+public class StatisticsSettings {
+    private Duration refreshInterval = Duration.ofSeconds(5);
+}
@@ -1,18 +1,41 @@
 package searchengine.controllers;
 
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import searchengine.dto.indexing.IndexPagesRequest;
+import searchengine.dto.indexing.IndexingJobStatus;
 import searchengine.dto.indexing.IndexingResponse;
+import searchengine.dto.indexing.PageBatchResponse;
+import searchengine.dto.indexing.PageBatchStatus;
+import searchengine.dto.indexing.ScheduledSiteStatus;
+import searchengine.dto.search.ErrorResponse;
+import searchengine.dto.search.SearchCount;
+import searchengine.dto.search.SearchRequest;
 import searchengine.dto.search.SearchResponse;
+import searchengine.dto.search.SearchResult;
 import searchengine.dto.statistics.StatisticsResponse;
-import searchengine.services.SearchService;
+import searchengine.exceptions.SearchOverloadedException;
+import searchengine.services.interfaces.CrawlProgressServiceInterface;
 import searchengine.services.interfaces.IndexingServiceInterface;
 import searchengine.services.interfaces.PageIndexingServiceInterface;
+import searchengine.services.interfaces.RefreshSchedulerServiceInterface;
+import searchengine.services.interfaces.SearchServiceInterface;
 import searchengine.services.interfaces.StatisticsServiceInterface;
+import searchengine.util.SearchExecutor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api")
@@ -21,15 +44,26 @@ public class ApiController {
     private final StatisticsServiceInterface statisticsService;
     private final IndexingServiceInterface indexingService;
     private final PageIndexingServiceInterface pageIndexingService;
-    private final SearchService searchService;
+    private final SearchServiceInterface searchService;
+    private final SearchExecutor searchExecutor;
+    private final CrawlProgressServiceInterface crawlProgressService;
+    private final RefreshSchedulerServiceInterface refreshSchedulerService;
+
+    private static final long SEARCH_STREAM_TIMEOUT_MS = 60_000;
+    private static final long PROGRESS_STREAM_TIMEOUT_MS = 30 * 60_000;
 
     public ApiController(StatisticsServiceInterface statisticsService,
                          IndexingServiceInterface indexingService,
-                         PageIndexingServiceInterface pageIndexingService, SearchService searchService) {
+                         PageIndexingServiceInterface pageIndexingService, SearchServiceInterface searchService,
+                         SearchExecutor searchExecutor, CrawlProgressServiceInterface crawlProgressService,
+                         RefreshSchedulerServiceInterface refreshSchedulerService) {
         this.statisticsService = statisticsService;
         this.indexingService = indexingService;
         this.pageIndexingService = pageIndexingService;
         this.searchService = searchService;
+        this.searchExecutor = searchExecutor;
+        this.crawlProgressService = crawlProgressService;
+        this.refreshSchedulerService = refreshSchedulerService;
     }
 
     @GetMapping("/statistics")
@@ -47,17 +81,95 @@ public class ApiController {
         return ResponseEntity.ok(indexingService.stopIndexing());
     }
 
+    @GetMapping("/indexing/jobs")
+    public ResponseEntity<List<IndexingJobStatus>> indexingJobs() {
+        return ResponseEntity.ok(indexingService.jobs());
+    }
+
+    @GetMapping("/indexing/schedule")
+    public ResponseEntity<List<ScheduledSiteStatus>> indexingSchedule() {
+        return ResponseEntity.ok(refreshSchedulerService.schedule());
+    }
+
+    @GetMapping(value = "/indexing/progress", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter indexingProgress() {
+        SseEmitter emitter = new SseEmitter(PROGRESS_STREAM_TIMEOUT_MS);
+        Runnable unsubscribe = crawlProgressService.subscribe(progress -> send(emitter, "progress", progress));
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+        return emitter;
+    }
+
     @PostMapping("/indexPage")
     public ResponseEntity<IndexingResponse> indexPage(@RequestParam String url) {
         return ResponseEntity.ok(pageIndexingService.indexPage(url));
     }
 
+    @PostMapping("/indexPages")
+    public ResponseEntity<PageBatchResponse> indexPages(@RequestBody IndexPagesRequest request) {
+        return ResponseEntity.ok(pageIndexingService.indexPages(request.getUrls()));
+    }
+
+    @GetMapping("/indexPages/{jobId}")
+    public ResponseEntity<PageBatchStatus> indexPagesStatus(@PathVariable String jobId) {
+        return ResponseEntity.of(pageIndexingService.batchStatus(jobId));
+    }
+
     @GetMapping("/search")
-    public ResponseEntity<SearchResponse> search(
-            @RequestParam(required = false) String query,
-            @RequestParam(required = false) String site,
-            @RequestParam(defaultValue = "0") int offset,
-            @RequestParam(defaultValue = "10") int limit) {
-        return ResponseEntity.ok(searchService.search(query, site, offset, limit));
+    public ResponseEntity<SearchResponse> search(SearchRequest request) {
+        return ResponseEntity.ok(searchService.search(request));
+    }
+
+    /**
+     * Поиск выполняется в потоке запроса, как у /search: перегрузка и ошибки параметров отвечают 503/400
+     * до заголовков SSE. События отправляются уже из готового ответа, поэтому медленный клиент
+     * не держит слот поиска.
+     */
+    @GetMapping(value = "/search/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter searchStream(SearchRequest request) {
+        SearchResponse response = searchService.search(request);
+        SseEmitter emitter = new SseEmitter(SEARCH_STREAM_TIMEOUT_MS);
+        searchExecutor.stream(() -> {
+            try {
+                send(emitter, "count", new SearchCount(response.getCount(), response.getSearchAfter()));
+                for (SearchResult result : response.getData()) {
+                    send(emitter, "result", result);
+                }
+                if (response.getDebug() != null) {
+                    send(emitter, "debug", response.getDebug());
+                }
+                send(emitter, "done", "");
+                emitter.complete();
+            } catch (RuntimeException e) {
+                emitter.completeWithError(e);
+            }
+        });
+        return emitter;
+    }
+
+    @ExceptionHandler(SearchOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handleOverload(SearchOverloadedException e) {
+        return errorResponse(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<ErrorResponse> handleBadRequest(IllegalArgumentException e) {
+        return errorResponse(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+
+    private ResponseEntity<ErrorResponse> errorResponse(HttpStatus status, String message) {
+        ErrorResponse response = new ErrorResponse();
+        response.setResult(false);
+        response.setError(message);
+        return ResponseEntity.status(status).body(response);
+    }
+
+    private void send(SseEmitter emitter, String event, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(event).data(data));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 }
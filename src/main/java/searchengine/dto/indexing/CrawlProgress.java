@@ -0,0 +1,12 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CrawlProgress {
+    private boolean indexing;
+    private long timestamp;
+    private List<SiteProgress> sites;
+}
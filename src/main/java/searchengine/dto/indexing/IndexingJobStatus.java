@@ -0,0 +1,14 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+@Data
+public class IndexingJobStatus {
+    private String site;
+    private JobState state;
+    private Long startedAt;
+    private Long finishedAt;
+    private Long durationMs;
+    private long pagesIndexed;
+    private String error;
+}
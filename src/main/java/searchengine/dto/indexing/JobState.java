@@ -0,0 +1,14 @@
+package searchengine.dto.indexing;
+
+public enum JobState {
+    QUEUED,
+    RUNNING,
+    CANCELLING,
+    COMPLETED,
+    FAILED,
+    CANCELLED;
+
+    public boolean isFinal() {
+        return this == COMPLETED || this == FAILED || this == CANCELLED;
+    }
+}
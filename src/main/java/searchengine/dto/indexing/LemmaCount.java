@@ -0,0 +1,4 @@
+package searchengine.dto.indexing;
+
+public record LemmaCount(Long lemmaId, Long count) {
+}
@@ -0,0 +1,12 @@
+package searchengine.dto.indexing;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class PageBatchResponse {
+    private boolean result;
+    private String jobId;
+    private int accepted;
+}
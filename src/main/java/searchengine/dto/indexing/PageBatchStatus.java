@@ -0,0 +1,18 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class PageBatchStatus {
+    private String jobId;
+    private JobState state;
+    private int total;
+    private int processed;
+    private int indexed;
+    private int failed;
+    private long startedAt;
+    private Long finishedAt;
+    private List<PageOutcome> pages;
+}
@@ -0,0 +1,15 @@
+package searchengine.dto.indexing;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PageOutcome {
+    private String url;
+    private boolean result;
+    private Integer code;
+    private String error;
+}
@@ -0,0 +1,15 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+@Data
+public class ScheduledSiteStatus {
+    private String url;
+    private int priority;
+    private String interval;
+    private String cron;
+    private int maxPages;
+    private boolean running;
+    private long nextRunAt;
+    private IndexingJobStatus lastRun;
+}
@@ -0,0 +1,14 @@
+package searchengine.dto.indexing;
+
+import lombok.Data;
+
+@Data
+public class SiteProgress {
+    private String url;
+    private long fetched;
+    private long indexed;
+    private long failed;
+    private int frontier;
+    private int pendingWrites;
+    private double pagesPerSecond;
+}
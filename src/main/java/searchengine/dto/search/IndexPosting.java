@@ -0,0 +1,4 @@
+package searchengine.dto.search;
+
+public record IndexPosting(Integer pageId, Long lemmaId, String lemma, Float ranking, byte[] positions) {
+}
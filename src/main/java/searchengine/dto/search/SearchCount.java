@@ -0,0 +1,13 @@
+package searchengine.dto.search;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class SearchCount {
+    private int count;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String searchAfter;
+}
@@ -0,0 +1,34 @@
+package searchengine.dto.search;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Непрозрачный курсор постраничной выдачи: релевантность и id последней отданной страницы
+ * и поколение индекса, по которому было посчитано ранжирование.
+ */
+public record SearchCursor(float score, int pageId, long generation) {
+
+    private static final int SIZE = Float.BYTES + Integer.BYTES + Long.BYTES;
+
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE)
+                .putFloat(score)
+                .putInt(pageId)
+                .putLong(generation);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    public static SearchCursor decode(String value) {
+        try {
+            byte[] bytes = Base64.getUrlDecoder().decode(value);
+            if (bytes.length != SIZE) {
+                throw new IllegalArgumentException("Некорректный курсор выдачи");
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            return new SearchCursor(buffer.getFloat(), buffer.getInt(), buffer.getLong());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Некорректный курсор выдачи", e);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package searchengine.dto.search;
+
+import lombok.Data;
+
+import java.util.Map;
+
+@Data
+public class SearchDebug {
+    private double totalMs;
+    private boolean cacheHit;
+    /**
+     * Время по этапам; для этапов, выполняемых параллельно по страницам, — сумма по всем страницам.
+     */
+    private Map<String, Double> stagesMs;
+    private Map<String, Long> counters;
+}
@@ -1,5 +1,6 @@
 package searchengine.dto.search;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -8,9 +9,13 @@ import java.util.List;
 
 @Data
 @AllArgsConstructor
-@JsonPropertyOrder({ "result", "count", "data" })
+@JsonPropertyOrder({ "result", "count", "data", "searchAfter", "debug" })
 public class SearchResponse {
     private boolean result;
     private int count;
     private List<SearchResult> data;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String searchAfter;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private SearchDebug debug;
 }
\ No newline at end of file
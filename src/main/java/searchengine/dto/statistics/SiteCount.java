@@ -0,0 +1,4 @@
+package searchengine.dto.statistics;
+
+public record SiteCount(Integer siteId, Long count) {
+}
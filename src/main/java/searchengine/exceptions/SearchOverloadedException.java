@@ -0,0 +1,7 @@
+package searchengine.exceptions;
+
+public class SearchOverloadedException extends RuntimeException {
+    public SearchOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -5,6 +5,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
@@ -16,7 +17,7 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "index_link")
+@Table(name = "index_link", indexes = @Index(name = "idx_index_lemma_page", columnList = "lemma_id, page_id"))
 public class IndexEntity {
 
     @Id
@@ -33,4 +34,7 @@ public class IndexEntity {
 
     @Column(name = "ranking", nullable = false)
     private Float ranking;
+
+    @Column(name = "positions", columnDefinition = "BLOB")
+    private byte[] positions;
 }
@@ -1,26 +1,23 @@
 package searchengine.model;
 
-import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
-import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.List;
-
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "lemma")
+@Table(name = "lemma", indexes = @Index(name = "idx_lemma_lemma_site", columnList = "lemma, site_id"))
 public class LemmaEntity {
 
     @Id
@@ -34,9 +31,9 @@ public class LemmaEntity {
     @Column(columnDefinition = "VARCHAR(255)", nullable = false)
     private String lemma;
 
+    /**
+     * Число страниц сайта, на которых встречается лемма.
+     */
     @Column(nullable = false)
     private int frequency;
-
-    @OneToMany(mappedBy = "lemma", cascade = CascadeType.ALL)
-    private List<IndexEntity> indices;
 }
@@ -1,6 +1,5 @@
 package searchengine.model;
 
-import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
@@ -11,15 +10,12 @@ import jakarta.persistence.Id;
 import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
-import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 import jakarta.persistence.UniqueConstraint;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.List;
-
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -45,8 +41,14 @@ public class PageEntity {
     @Column(columnDefinition = "MEDIUMTEXT", nullable = false)
     private String content;
 
-    @OneToMany(mappedBy = "page", cascade = CascadeType.ALL)
-    private List<IndexEntity> indices;
+    /**
+     * SHA-256 содержимого, см. {@link searchengine.util.ContentHash}; у страниц, записанных до его появления, — null.
+     */
+    @Column(name = "content_hash", columnDefinition = "CHAR(64)")
+    private String contentHash;
+
+    @Column(name = "token_offsets", columnDefinition = "MEDIUMBLOB")
+    private byte[] tokenOffsets;
 
     @Enumerated(EnumType.STRING)
     private Status status;
@@ -1,6 +1,5 @@
 package searchengine.model;
 
-import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
@@ -8,7 +7,6 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
-import jakarta.persistence.OneToMany;
 import jakarta.persistence.Table;
 import jakarta.persistence.Temporal;
 import jakarta.persistence.TemporalType;
@@ -17,7 +15,6 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.util.Date;
-import java.util.List;
 
 @Data
 @NoArgsConstructor
@@ -47,9 +44,16 @@ public class SiteEntity {
     @Column(columnDefinition = "VARCHAR(255)", nullable = false)
     private String name;
 
-    @OneToMany(mappedBy = "site", cascade = CascadeType.ALL)
-    private List<PageEntity> pages;
-
-    @OneToMany(mappedBy = "site", cascade = CascadeType.ALL)
-    private List<LemmaEntity> lemmas;
+    /**
+     * Поколение индекса, по которому идет поиск. У каждого URL не больше одного живого поколения;
+     * новое строится рядом и становится живым только после успешного обхода.
+     */
+    @Column(nullable = false)
+    private boolean live;
+
+    /**
+     * Счетчик записей в живое поколение мимо полного обхода (пачки страниц); входит в отпечаток снимка индекса.
+     */
+    @Column(name = "index_version", columnDefinition = "BIGINT DEFAULT 0", nullable = false)
+    private long indexVersion;
 }
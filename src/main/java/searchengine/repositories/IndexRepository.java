@@ -1,25 +1,63 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.indexing.LemmaCount;
+import searchengine.dto.search.IndexPosting;
 import searchengine.model.IndexEntity;
 import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface IndexRepository extends JpaRepository<IndexEntity, Long> {
-    void deleteByPage(PageEntity page);
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IndexEntity i WHERE i.page = :page")
+    int deleteByPage(@Param("page") PageEntity page);
 
-    @Query("SELECT i FROM IndexEntity i " +
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IndexEntity i WHERE i.page.id IN :pageIds")
+    int deleteByPageIds(@Param("pageIds") Collection<Integer> pageIds);
+
+    @Query("SELECT new searchengine.dto.indexing.LemmaCount(i.lemma.id, COUNT(i)) " +
+            "FROM IndexEntity i " +
+            "WHERE i.page.id IN :pageIds " +
+            "GROUP BY i.lemma.id")
+    List<LemmaCount> countPagesByLemmaForPages(@Param("pageIds") Collection<Integer> pageIds);
+
+    @Query("SELECT new searchengine.dto.search.IndexPosting(i.page.id, l.id, l.lemma, i.ranking, i.positions) " +
+            "FROM IndexEntity i " +
             "JOIN i.lemma l " +
-            "WHERE i.page IN :pages " +
-            "AND l.lemma IN :lemmas " +
-            "ORDER BY l.frequency ASC")
-    List<IndexEntity> findByPagesAndLemmas(
-            @Param("pages") List<PageEntity> pages,
+            "WHERE i.page.id IN :pageIds " +
+            "AND l.lemma IN :lemmas")
+    List<IndexPosting> findPostingsByPageIdsAndLemmas(
+            @Param("pageIds") List<Integer> pageIds,
             @Param("lemmas") List<String> lemmas
     );
+
+    @Query("SELECT new searchengine.dto.search.IndexPosting(i.page.id, l.id, l.lemma, i.ranking, i.positions) " +
+            "FROM IndexEntity i " +
+            "JOIN i.lemma l " +
+            "WHERE i.page.site = :site " +
+            "AND i.page.id BETWEEN :fromId AND :toId " +
+            "ORDER BY i.page.id")
+    List<IndexPosting> findPostingsBySiteAndPageIdBetween(@Param("site") SiteEntity site,
+                                                          @Param("fromId") int fromId,
+                                                          @Param("toId") int toId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM IndexEntity i WHERE i.page.id IN " +
+            "(SELECT p.id FROM PageEntity p WHERE p.site = :site AND p.id BETWEEN :fromId AND :toId)")
+    int deleteBySiteAndPageIdBetween(@Param("site") SiteEntity site,
+                                     @Param("fromId") int fromId,
+                                     @Param("toId") int toId);
 }
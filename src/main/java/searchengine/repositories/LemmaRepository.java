@@ -1,10 +1,16 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.statistics.SiteCount;
 import searchengine.model.LemmaEntity;
 import searchengine.model.SiteEntity;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,7 +21,33 @@ public interface LemmaRepository extends JpaRepository<LemmaEntity, Long> {
 
     long countBySite(SiteEntity site);
 
+    @Query("SELECT new searchengine.dto.statistics.SiteCount(l.site.id, COUNT(l)) " +
+            "FROM LemmaEntity l " +
+            "GROUP BY l.site.id")
+    List<SiteCount> countGroupedBySite();
+
     List<LemmaEntity> findByLemmaIn(List<String> lemmas);
 
-    int countByLemma(String lemma);
+    List<LemmaEntity> findBySiteAndLemmaIn(SiteEntity site, Collection<String> lemmas);
+
+    @Query("SELECT COUNT(l) FROM LemmaEntity l WHERE l.lemma = :lemma AND l.site.live = true")
+    int countByLemma(@Param("lemma") String lemma);
+
+    @Query("SELECT MIN(l.id) FROM LemmaEntity l WHERE l.site = :site")
+    Long findMinIdBySite(@Param("site") SiteEntity site);
+
+    @Query("SELECT MAX(l.id) FROM LemmaEntity l WHERE l.site = :site")
+    Long findMaxIdBySite(@Param("site") SiteEntity site);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE LemmaEntity l SET l.frequency = l.frequency + :delta WHERE l.id IN :ids")
+    int incrementFrequency(@Param("delta") int delta, @Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM LemmaEntity l WHERE l.site = :site AND l.id BETWEEN :fromId AND :toId")
+    int deleteBySiteAndIdBetween(@Param("site") SiteEntity site,
+                                 @Param("fromId") long fromId,
+                                 @Param("toId") long toId);
 }
@@ -1,32 +1,66 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.dto.statistics.SiteCount;
 import searchengine.model.PageEntity;
 import searchengine.model.SiteEntity;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PageRepository extends JpaRepository<PageEntity, Integer> {
 
     long countBySite(SiteEntity site);
 
+    @Query("SELECT new searchengine.dto.statistics.SiteCount(p.site.id, COUNT(p)) " +
+            "FROM PageEntity p " +
+            "GROUP BY p.site.id")
+    List<SiteCount> countGroupedBySite();
+
     PageEntity findByPathAndSite(String path, SiteEntity site);
 
-    @Query("SELECT p " +
+    boolean existsBySiteAndPath(SiteEntity site, String path);
+
+    @Query("SELECT p.contentHash FROM PageEntity p WHERE p.site = :site AND p.path = :path")
+    Optional<String> findContentHashBySiteAndPath(@Param("site") SiteEntity site, @Param("path") String path);
+
+    @Query("SELECT p.id FROM PageEntity p WHERE p.site = :site AND p.path IN :paths")
+    List<Integer> findIdsBySiteAndPathIn(@Param("site") SiteEntity site, @Param("paths") Collection<String> paths);
+
+    @Query("SELECT p.id " +
             "FROM PageEntity p " +
-            "JOIN p.indices i " +
+            "JOIN IndexEntity i ON i.page = p " +
             "JOIN i.lemma l " +
             "WHERE l.lemma IN :lemmas " +
             "AND p.site.url = :siteUrl " +
+            "AND p.site.live = true " +
             "GROUP BY p.id " +
             "HAVING COUNT(DISTINCT l.lemma) = :lemmaCount")
-    List<PageEntity> findPagesByLemmasAndSite(
+    List<Integer> findPageIdsByLemmasAndSite(
             @Param("lemmas") List<String> lemmas,
             @Param("siteUrl") String siteUrl,
             @Param("lemmaCount") int lemmaCount
     );
+
+    @Query("SELECT MIN(p.id) FROM PageEntity p WHERE p.site = :site")
+    Integer findMinIdBySite(@Param("site") SiteEntity site);
+
+    @Query("SELECT MAX(p.id) FROM PageEntity p WHERE p.site = :site")
+    Integer findMaxIdBySite(@Param("site") SiteEntity site);
+
+    List<PageEntity> findBySiteAndIdBetween(SiteEntity site, int fromId, int toId);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM PageEntity p WHERE p.site = :site AND p.id BETWEEN :fromId AND :toId")
+    int deleteBySiteAndIdBetween(@Param("site") SiteEntity site,
+                                 @Param("fromId") int fromId,
+                                 @Param("toId") int toId);
 }
@@ -1,7 +1,11 @@
 package searchengine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.model.SiteEntity;
 import searchengine.model.Status;
 
@@ -12,5 +16,18 @@ import java.util.Optional;
 public interface SiteRepository extends JpaRepository<SiteEntity, Integer> {
     List<SiteEntity> findByStatus(Status status);
 
-    Optional<SiteEntity> findByUrl(String url);
+    Optional<SiteEntity> findByUrlAndLiveTrue(String url);
+
+    List<SiteEntity> findByUrlAndLiveFalse(String url);
+
+    List<SiteEntity> findByStatusAndLiveFalse(Status status);
+
+    List<SiteEntity> findByLiveTrue();
+
+    boolean existsByIdAndLiveTrue(int id);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE SiteEntity s SET s.indexVersion = s.indexVersion + 1 WHERE s.id = :siteId")
+    int incrementIndexVersion(@Param("siteId") int siteId);
 }
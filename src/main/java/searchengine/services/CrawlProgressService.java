@@ -0,0 +1,117 @@
+package searchengine.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import searchengine.config.CrawlerSettings;
+import searchengine.dto.indexing.CrawlProgress;
+import searchengine.dto.indexing.SiteProgress;
+import searchengine.services.interfaces.CrawlProgressServiceInterface;
+import searchengine.util.CrawlerMetrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Рассылка прогресса индексации подписчикам с фиксированным интервалом. Данные берутся только
+ * из счетчиков обходчика в памяти, без обращений к БД; скорость считается по разнице между тиками.
+ */
+@Slf4j
+@Service
+public class CrawlProgressService implements CrawlProgressServiceInterface {
+
+    private final CrawlerMetrics crawlerMetrics;
+    private final IndexingService indexingService;
+    private final List<Consumer<CrawlProgress>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService ticker;
+
+    private final Map<String, Long> previousIndexed = new HashMap<>();
+    private long previousTick = System.nanoTime();
+    private volatile CrawlProgress latest;
+
+    public CrawlProgressService(CrawlerMetrics crawlerMetrics, IndexingService indexingService,
+                                CrawlerSettings crawlerSettings) {
+        this.crawlerMetrics = crawlerMetrics;
+        this.indexingService = indexingService;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "crawl-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = crawlerSettings.getProgressInterval().toMillis();
+        ticker.scheduleAtFixedRate(this::tick, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Runnable subscribe(Consumer<CrawlProgress> listener) {
+        listeners.add(listener);
+        CrawlProgress current = latest;
+        if (current != null) {
+            ticker.execute(() -> deliver(listener, current));
+        }
+        return () -> listeners.remove(listener);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        listeners.clear();
+    }
+
+    private void tick() {
+        try {
+            CrawlProgress progress = snapshot();
+            latest = progress;
+            for (Consumer<CrawlProgress> listener : listeners) {
+                deliver(listener, progress);
+            }
+        } catch (RuntimeException e) {
+            log.error("Ошибка при рассылке прогресса индексации", e);
+        }
+    }
+
+    private void deliver(Consumer<CrawlProgress> listener, CrawlProgress progress) {
+        try {
+            listener.accept(progress);
+        } catch (RuntimeException e) {
+            log.debug("Подписчик прогресса индексации отключен: {}", e.getMessage());
+            listeners.remove(listener);
+        }
+    }
+
+    private CrawlProgress snapshot() {
+        long now = System.nanoTime();
+        double seconds = Math.max(now - previousTick, 1) / 1e9;
+        previousTick = now;
+
+        List<SiteProgress> sites = new ArrayList<>();
+        for (Map.Entry<String, CrawlerMetrics.SiteCounters> entry : crawlerMetrics.progress().entrySet()) {
+            CrawlerMetrics.SiteCounters counters = entry.getValue();
+            long indexed = counters.getIndexed().sum();
+            Long previous = previousIndexed.put(entry.getKey(), indexed);
+
+            SiteProgress site = new SiteProgress();
+            site.setUrl(entry.getKey());
+            site.setFetched(counters.getFetched().sum());
+            site.setIndexed(indexed);
+            site.setFailed(counters.getFailed().sum());
+            site.setFrontier(Math.max(counters.getFrontier().get(), 0));
+            site.setPendingWrites(counters.getPendingWrites().get());
+            site.setPagesPerSecond(previous == null ? 0 : Math.max(indexed - previous, 0) / seconds);
+            sites.add(site);
+        }
+
+        CrawlProgress progress = new CrawlProgress();
+        progress.setIndexing(indexingService.isIndexing());
+        progress.setTimestamp(System.currentTimeMillis());
+        progress.setSites(sites);
+        return progress;
+    }
+}
@@ -1,37 +1,48 @@
 package searchengine.services;
 
-import lombok.Getter;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import searchengine.config.CrawlerSettings;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
 import searchengine.config.UserConfig;
+import searchengine.dto.indexing.IndexingJobStatus;
 import searchengine.dto.indexing.IndexingResponse;
-import searchengine.model.LemmaEntity;
+import searchengine.dto.indexing.JobState;
 import searchengine.model.SiteEntity;
-import searchengine.model.Status;
 import searchengine.repositories.IndexRepository;
 import searchengine.repositories.LemmaRepository;
 import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
 import searchengine.services.interfaces.IndexingServiceInterface;
+import searchengine.util.CrawlFrontier;
+import searchengine.util.CrawlLemmaCache;
+import searchengine.util.CrawlerMetrics;
+import searchengine.util.HostRateLimiter;
+import searchengine.util.IndexingJob;
 import searchengine.util.LemmaFinder;
+import searchengine.util.SiteGenerations;
+import searchengine.util.SitemapReader;
 import searchengine.util.WebPageIndexerTask;
 
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.List;
-
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 @Slf4j
 public class IndexingService implements IndexingServiceInterface {
 
+    private static final String STOPPED_BY_USER = "Индексация остановлена пользователем";
+
     private final SitesList sitesList;
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
@@ -39,19 +50,27 @@ public class IndexingService implements IndexingServiceInterface {
     private final LemmaFinder lemmaFinder;
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
-
-    private final ConcurrentMap<String, LemmaEntity> lemmaCache = new ConcurrentHashMap<>();
-    private final ConcurrentMap<String, Boolean> pageCache = new ConcurrentHashMap<>();
-
-    @Getter
-    private final AtomicBoolean isIndexing = new AtomicBoolean(false);
+    private final CrawlerMetrics crawlerMetrics;
+    private final HostRateLimiter hostRateLimiter;
+    private final SiteGenerations siteGenerations;
+    private final SitemapReader sitemapReader;
+    private final CrawlerSettings crawlerSettings;
+    private final CrawlLemmaCache lemmaCache;
+
+    /**
+     * Последняя задача по каждому сайту — и активная, и завершенная, чтобы было видно итог и время.
+     */
+    private final ConcurrentMap<String, IndexingJob> jobs = new ConcurrentHashMap<>();
 
     private final ReentrantLock indexingLock = new ReentrantLock();
-    private ForkJoinPool pool;
+    private final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors() * 2);
 
     public IndexingService(SitesList sitesList, SiteRepository siteRepository, PageRepository pageRepository,
                            UserConfig userConfig, LemmaFinder lemmaFinder, LemmaRepository lemmaRepository,
-                           IndexRepository indexRepository) {
+                           IndexRepository indexRepository, CrawlerMetrics crawlerMetrics,
+                           HostRateLimiter hostRateLimiter, SiteGenerations siteGenerations,
+                           SitemapReader sitemapReader, CrawlerSettings crawlerSettings,
+                           CrawlLemmaCache lemmaCache) {
         this.sitesList = sitesList;
         this.siteRepository = siteRepository;
         this.pageRepository = pageRepository;
@@ -59,6 +78,12 @@ public class IndexingService implements IndexingServiceInterface {
         this.lemmaFinder = lemmaFinder;
         this.lemmaRepository = lemmaRepository;
         this.indexRepository = indexRepository;
+        this.crawlerMetrics = crawlerMetrics;
+        this.hostRateLimiter = hostRateLimiter;
+        this.siteGenerations = siteGenerations;
+        this.sitemapReader = sitemapReader;
+        this.crawlerSettings = crawlerSettings;
+        this.lemmaCache = lemmaCache;
     }
 
     @Override
@@ -67,42 +92,14 @@ public class IndexingService implements IndexingServiceInterface {
             return new IndexingResponse(false, "Индексация уже запущена", HttpStatus.BAD_REQUEST);
         }
         try {
-            if (isIndexing.get()) {
+            if (isIndexing()) {
                 return new IndexingResponse(false, "Индексация уже запущена", HttpStatus.BAD_REQUEST);
             }
 
             log.info("Запуск индексации...");
 
-            isIndexing.set(true);
-
-            if (pool != null) {
-                pool.shutdownNow();
-                pool = null;
-            }
-            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors() * 2);
-            log.info("Создание нового пула потоков");
-
-            lemmaCache.clear();
-            pageCache.clear();
-
-            List<Site> sites = sitesList.getSites();
-            for (Site siteConfig : sites) {
-                SiteEntity site = siteRepository.findByUrl(siteConfig.getUrl()).orElse(new SiteEntity());
-
-                log.info("Обработка сайта: {}", siteConfig.getUrl());
-
-                site.setUrl(siteConfig.getUrl());
-                site.setName(siteConfig.getName());
-                site.setStatus(Status.INDEXING);
-                site.setStatusTime(new Date());
-                siteRepository.save(site);
-
-                WebPageIndexerTask task = new WebPageIndexerTask(
-                        site.getUrl(), site, pageRepository, siteRepository, userConfig,
-                        lemmaFinder, lemmaRepository, indexRepository, pageCache, lemmaCache
-                );
-                log.info("Создание задачи для URL: {}", site.getUrl());
-                pool.submit(task);
+            for (Site siteConfig : sitesList.getSites()) {
+                submit(siteConfig);
             }
 
             return new IndexingResponse(true, null, HttpStatus.OK);
@@ -117,25 +114,15 @@ public class IndexingService implements IndexingServiceInterface {
             return new IndexingResponse(false, "Индексация не запущена", HttpStatus.BAD_REQUEST);
         }
         try {
-            if (!isIndexing.get()) {
+            if (!isIndexing()) {
                 return new IndexingResponse(false, "Индексация не запущена", HttpStatus.BAD_REQUEST);
             }
 
             log.info("Остановка индексации...");
-
-            isIndexing.set(false);
-
-            if (pool != null) {
-                pool.shutdownNow();
-                pool = null;
-            }
-
-            List<SiteEntity> sites = siteRepository.findByStatus(Status.INDEXING);
-            for (SiteEntity site : sites) {
-                site.setStatus(Status.FAILED);
-                site.setLastError("Индексация остановлена пользователем");
-                site.setStatusTime(new Date());
-                siteRepository.save(site);
+            for (IndexingJob job : jobs.values()) {
+                if (!job.isDone()) {
+                    job.cancel(STOPPED_BY_USER);
+                }
             }
 
             return new IndexingResponse(true, "Индексация остановлена", HttpStatus.OK);
@@ -144,11 +131,124 @@ public class IndexingService implements IndexingServiceInterface {
         }
     }
 
+    /**
+     * Создает строящееся поколение сайта и ставит его обход в пул. Завершение задачи —
+     * через {@link IndexingJob#completion()}.
+     */
+    public IndexingJob submit(Site siteConfig) {
+        log.info("Обработка сайта: {}", siteConfig.getUrl());
+
+        SiteEntity site = siteGenerations.begin(siteConfig);
+        IndexingJob job = new IndexingJob(site);
+        jobs.put(site.getUrl(), job);
+
+        int maxPages = siteConfig.getMaxPages() != null ? siteConfig.getMaxPages() : crawlerSettings.getMaxPages();
+        int maxDepth = siteConfig.getMaxDepth() != null ? siteConfig.getMaxDepth() : crawlerSettings.getMaxDepth();
+        crawlerMetrics.resetProgress(site.getUrl());
+        CrawlFrontier frontier = new CrawlFrontier(maxPages, maxDepth, crawlerMetrics.frontier(site.getUrl()));
+        frontier.offer(site.getUrl(), 0, 1.0);
+        pool.execute(() -> run(job, frontier));
+        return job;
+    }
+
     @Override
-    public boolean isIndexing() {
-        return isIndexing.get();
+    public List<IndexingJobStatus> jobs() {
+        List<IndexingJobStatus> statuses = new ArrayList<>();
+        for (IndexingJob job : jobs.values()) {
+            statuses.add(job.toStatus());
+        }
+        return statuses;
     }
-}
 
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(job -> job.cancel("Приложение остановлено"));
+        pool.shutdown();
+    }
 
+    /**
+     * Этапы задачи: обход, сброс накопленных лемм сайта, затем переключение поколения или его отмена.
+     * Остановленная задача доходит до конца текущих страниц и отменяет свое поколение.
+     */
+    private void run(IndexingJob job, CrawlFrontier frontier) {
+        SiteEntity site = job.site();
+        if (!job.start()) {
+            siteGenerations.abort(site, job.error());
+            return;
+        }
 
+        JobState outcome = JobState.FAILED;
+        String error = null;
+        try {
+            crawl(job, frontier);
+            if (job.isCancelled()) {
+                siteGenerations.abort(site, job.error());
+                outcome = JobState.CANCELLED;
+            } else {
+                lemmaCache.flush(site);
+                if (pageRepository.countBySite(site) > 0) {
+                    siteGenerations.commit(site);
+                    outcome = JobState.COMPLETED;
+                } else {
+                    error = site.getLastError() != null
+                            ? site.getLastError() : "Не удалось проиндексировать ни одной страницы";
+                    siteGenerations.abort(site, error);
+                }
+            }
+        } catch (RuntimeException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            log.error("Ошибка при индексации сайта {}", site.getUrl(), cause);
+            error = cause.getMessage();
+            siteGenerations.abort(site, error);
+        } finally {
+            lemmaCache.release(site);
+            long nanos = job.finish(outcome, error);
+            crawlerMetrics.recordJob(site.getUrl(), "full", job.state().name(), nanos);
+            log.info("Индексация сайта {} завершена: {} за {} мс, страниц {}", site.getUrl(), job.state(),
+                    nanos / 1_000_000, job.toStatus().getPagesIndexed());
+        }
+    }
+
+    /**
+     * Обход сайта несколькими обработчиками над общей очередью. Страницы из sitemap попадают в очередь
+     * сразу со своим priority; глубина для них считается по пути.
+     */
+    private void crawl(IndexingJob job, CrawlFrontier frontier) {
+        SiteEntity site = job.site();
+        if (crawlerSettings.isUseSitemap()) {
+            for (Map.Entry<String, Double> entry : sitemapReader.read(site.getUrl()).entrySet()) {
+                frontier.offer(entry.getKey(), CrawlFrontier.pathDepth(site.getUrl(), entry.getKey()),
+                        entry.getValue());
+            }
+        }
+
+        int workers = Math.max(crawlerSettings.getCrawlWorkers(), 1);
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[workers];
+        for (int i = 0; i < workers; i++) {
+            WebPageIndexerTask task = new WebPageIndexerTask(site, frontier, pageRepository, siteRepository,
+                    userConfig, lemmaFinder, lemmaRepository, indexRepository, crawlerMetrics,
+                    hostRateLimiter, job, lemmaCache);
+            futures[i] = CompletableFuture.runAsync(task, pool);
+        }
+        CompletableFuture.allOf(futures).join();
+        log.info("Обход сайта {}: выдано страниц {}", site.getUrl(), frontier.taken());
+    }
+
+    /**
+     * Идет ли сейчас полная индексация указанного сайта.
+     */
+    public boolean isIndexing(String siteUrl) {
+        IndexingJob job = jobs.get(siteUrl);
+        return job != null && !job.isDone();
+    }
+
+    @Override
+    public boolean isIndexing() {
+        for (IndexingJob job : jobs.values()) {
+            if (!job.isDone()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
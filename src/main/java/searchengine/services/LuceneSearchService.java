@@ -0,0 +1,498 @@
+package searchengine.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermVectors;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.jsoup.Jsoup;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import searchengine.config.SearchSettings;
+import searchengine.dto.search.SearchDebug;
+import searchengine.dto.search.SearchRequest;
+import searchengine.dto.search.SearchResponse;
+import searchengine.dto.search.SearchResult;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.interfaces.IndexUpdateListener;
+import searchengine.services.interfaces.SearchServiceInterface;
+import searchengine.services.interfaces.SearchStreamListener;
+import searchengine.util.LemmaAnalyzer;
+import searchengine.util.LemmaFinder;
+import searchengine.util.PageBatchWriter;
+import searchengine.util.SearchExecutor;
+import searchengine.util.SearchTrace;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск по локальному индексу Lucene (search-settings.engine=lucene). Документ индекса — страница живого
+ * поколения сайта: леммы текста от {@link LemmaAnalyzer}, а также заголовок и текст для сниппетов, так что
+ * запрос обходится без БД. Индекс обновляется через {@link IndexUpdateListener}: новое поколение сайта
+ * переиндексируется из БД целиком, пачки страниц — по ключу сайт + путь. Все записи идут в одном потоке,
+ * а читатели видят изменения только после их фиксации.
+ * <p>
+ * Для сниппетов леммы хранятся с векторами терминов и смещениями слов, поэтому слова запроса находятся в тексте
+ * без морфологии во время поиска. Индекс прежнего формата (без векторов) при старте создается заново.
+ * <p>
+ * Продолжение выдачи по курсору (searchAfter) не поддерживается — только offset/limit.
+ */
+@Slf4j
+@Service
+@Primary
+@ConditionalOnProperty(prefix = "search-settings", name = "engine", havingValue = "lucene")
+public class LuceneSearchService implements SearchServiceInterface, IndexUpdateListener {
+
+    private static final String KEY = "key";
+    private static final String SITE = "site";
+    private static final String SITE_NAME = "siteName";
+    private static final String PATH = "path";
+    private static final String TITLE = "title";
+    private static final String TEXT = "text";
+    private static final String CONTENT = "content";
+
+    private static final String FORMAT = "format";
+    private static final String FORMAT_VERSION = "2";
+    private static final FieldType CONTENT_TYPE = contentType();
+
+    private static final int SNIPPET_LENGTH = 300;
+    private static final int SNIPPET_CONTEXT = 150;
+    private static final int REBUILD_CHUNK = 500;
+
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaFinder lemmaFinder;
+    private final SearchExecutor searchExecutor;
+    private final Duration slowQueryThreshold;
+
+    private final Directory directory;
+    private final IndexWriter writer;
+    private final SearcherManager searcherManager;
+    private final ExecutorService indexExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lucene-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public LuceneSearchService(SiteRepository siteRepository, PageRepository pageRepository, LemmaFinder lemmaFinder,
+                               SearchExecutor searchExecutor, SearchSettings searchSettings) throws IOException {
+        this.siteRepository = siteRepository;
+        this.pageRepository = pageRepository;
+        this.lemmaFinder = lemmaFinder;
+        this.searchExecutor = searchExecutor;
+        this.slowQueryThreshold = searchSettings.getSlowQueryThreshold();
+
+        Files.createDirectories(searchSettings.getLuceneIndexPath());
+        this.directory = FSDirectory.open(searchSettings.getLuceneIndexPath());
+        boolean current = isCurrentFormat(directory);
+        if (!current) {
+            log.info("Индекс Lucene в {} прежнего формата, создается заново", searchSettings.getLuceneIndexPath());
+        }
+        IndexWriterConfig.OpenMode openMode = current
+                ? IndexWriterConfig.OpenMode.CREATE_OR_APPEND
+                : IndexWriterConfig.OpenMode.CREATE;
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(new LemmaAnalyzer(lemmaFinder))
+                .setOpenMode(openMode));
+        writer.setLiveCommitData(Map.of(FORMAT, FORMAT_VERSION).entrySet());
+        this.searcherManager = new SearcherManager(writer, null);
+        if (writer.getDocStats().numDocs == 0) {
+            log.info("Индекс Lucene в {} пуст, строится из БД", searchSettings.getLuceneIndexPath());
+            rebuild().exceptionally(e -> {
+                log.error("Не удалось построить индекс Lucene", e);
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public SearchResponse search(SearchRequest request) {
+        SearchResponse response = new SearchResponse(true, 0, new ArrayList<>(), null, null);
+        streamSearch(request, new SearchStreamListener() {
+            @Override
+            public void onCount(int count, String nextCursor) {
+                response.setCount(count);
+            }
+
+            @Override
+            public void onResult(SearchResult result) {
+                response.getData().add(result);
+            }
+
+            @Override
+            public void onDebug(SearchDebug debug) {
+                response.setDebug(debug);
+            }
+        });
+        return response;
+    }
+
+    @Override
+    public void streamSearch(SearchRequest request, SearchStreamListener listener) {
+        if (request.getQuery() == null || request.getQuery().isEmpty()) {
+            throw new IllegalArgumentException("Пустой поисковый запрос");
+        }
+        if (request.getSearchAfter() != null && !request.getSearchAfter().isEmpty()) {
+            throw new IllegalArgumentException("Движок lucene не поддерживает searchAfter, используйте offset и limit");
+        }
+        searchExecutor.admit(deadline -> {
+            SearchTrace trace = new SearchTrace();
+            try {
+                executeSearch(request, listener, deadline, trace);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Ошибка чтения индекса Lucene", e);
+            }
+            if (request.isDebug()) {
+                listener.onDebug(trace.toDebug());
+            }
+            logSlowQuery(request, trace);
+        });
+    }
+
+    /**
+     * Полностью перестраивает индекс по живым поколениям сайтов в БД.
+     */
+    public CompletableFuture<Void> rebuild() {
+        return CompletableFuture.runAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                writer.deleteAll();
+                for (SiteEntity site : siteRepository.findByLiveTrue()) {
+                    addSitePages(site);
+                }
+                commit();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            log.info("Индекс Lucene перестроен за {} мс: {} документов, {} байт",
+                    (System.nanoTime() - start) / 1_000_000, writer.getDocStats().numDocs, sizeBytes());
+        }, indexExecutor);
+    }
+
+    /**
+     * Объем файлов индекса на диске.
+     */
+    public long sizeBytes() {
+        long bytes = 0;
+        try {
+            for (String file : directory.listAll()) {
+                bytes += directory.fileLength(file);
+            }
+        } catch (IOException e) {
+            log.warn("Не удалось посчитать размер индекса Lucene: {}", e.getMessage());
+        }
+        return bytes;
+    }
+
+    @Override
+    public void siteCommitted(SiteEntity site) {
+        indexExecutor.execute(() -> {
+            try {
+                writer.deleteDocuments(new Term(SITE, site.getUrl()));
+                addSitePages(site);
+                commit();
+            } catch (IOException | RuntimeException e) {
+                log.error("Ошибка переиндексации сайта {} в Lucene", site.getUrl(), e);
+            }
+        });
+    }
+
+    @Override
+    public void pagesWritten(SiteEntity site, List<PageBatchWriter.ParsedPage> pages) {
+        indexExecutor.execute(() -> {
+            try {
+                for (PageBatchWriter.ParsedPage page : pages) {
+                    Term key = new Term(KEY, site.getUrl() + page.path());
+                    if (page.code() >= 400) {
+                        writer.deleteDocuments(key);
+                    } else {
+                        writer.updateDocument(key, document(site, page.path(), page.content()));
+                    }
+                }
+                commit();
+            } catch (IOException | RuntimeException e) {
+                log.error("Ошибка записи страниц сайта {} в Lucene", site.getUrl(), e);
+            }
+        });
+    }
+
+    @Override
+    public void pagesDeleted(SiteEntity site, List<String> paths) {
+        indexExecutor.execute(() -> {
+            try {
+                for (String path : paths) {
+                    writer.deleteDocuments(new Term(KEY, site.getUrl() + path));
+                }
+                commit();
+            } catch (IOException | RuntimeException e) {
+                log.error("Ошибка удаления страниц сайта {} из Lucene", site.getUrl(), e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException, InterruptedException {
+        indexExecutor.shutdown();
+        indexExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    private void logSlowQuery(SearchRequest request, SearchTrace trace) {
+        long elapsed = trace.elapsedMillis();
+        if (elapsed >= slowQueryThreshold.toMillis()) {
+            log.warn("Медленный поисковый запрос Lucene ({} мс): query: '{}', site: '{}', offset: {}, limit: {}; {}",
+                    elapsed, request.getQuery(), request.getSite(), request.getOffset(), request.getLimit(),
+                    trace.describe());
+        }
+    }
+
+    private void executeSearch(SearchRequest request, SearchStreamListener listener, long deadline,
+                               SearchTrace trace) throws IOException {
+        String query = request.getQuery();
+        List<LemmaFinder.WordToken> tokens = trace.time(SearchTrace.Stage.LEMMATIZATION,
+                () -> lemmaFinder.tokenize(query));
+        Set<String> lemmas = new LinkedHashSet<>();
+        tokens.stream().map(LemmaFinder.WordToken::lemma).filter(Objects::nonNull).forEach(lemmas::add);
+        if (lemmas.isEmpty()) {
+            listener.onCount(0, null);
+            return;
+        }
+
+        Query luceneQuery = buildQuery(query, tokens, lemmas, request.getSite());
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            int total = trace.time(SearchTrace.Stage.FIND_PAGES, () -> count(searcher, luceneQuery));
+            trace.count("rankedPages", total);
+            int from = Math.min(Math.max(request.getOffset(), 0), total);
+            int to = (int) Math.min(total, (long) from + Math.max(request.getLimit(), 0));
+            listener.onCount(total, null);
+            if (from >= to) {
+                return;
+            }
+
+            TopDocs top = trace.time(SearchTrace.Stage.SCORING, () -> topDocs(searcher, luceneQuery, to));
+            // Релевантность делится на лучший результат, как в RankedPages.of у JPA-поиска: поле relevance
+            // в API не зависит от движка
+            float maxScore = top.scoreDocs.length == 0 ? 0 : top.scoreDocs[0].score;
+            StoredFields storedFields = searcher.storedFields();
+            TermVectors termVectors = searcher.getIndexReader().termVectors();
+            List<CompletableFuture<SearchResult>> futures = new ArrayList<>();
+            for (int rank = from; rank < Math.min(to, top.scoreDocs.length); rank++) {
+                ScoreDoc hit = top.scoreDocs[rank];
+                Document doc = storedFields.document(hit.doc);
+                // Смещения читаются здесь, пока читатель индекса захвачен; сниппет строится в пуле рендеринга
+                List<int[]> keywords = keywordOffsets(termVectors.get(hit.doc, CONTENT), lemmas);
+                double relevance = maxScore > 0 ? hit.score / maxScore : 0;
+                futures.add(searchExecutor.render(() -> toResult(doc, relevance, keywords, trace)));
+            }
+            searchExecutor.awaitAll(futures, deadline, listener::onResult);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Все леммы обязательны, как в JPA-поиске; запрос в кавычках — фраза с теми же смещениями слов.
+     */
+    private static Query buildQuery(String query, List<LemmaFinder.WordToken> tokens, Set<String> lemmas,
+                                    String site) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        String trimmed = query.trim();
+        if (trimmed.length() > 1 && trimmed.startsWith("\"") && trimmed.endsWith("\"")) {
+            PhraseQuery.Builder phrase = new PhraseQuery.Builder();
+            int first = -1;
+            for (int position = 0; position < tokens.size(); position++) {
+                String lemma = tokens.get(position).lemma();
+                if (lemma == null) {
+                    continue;
+                }
+                if (first < 0) {
+                    first = position;
+                }
+                phrase.add(new Term(CONTENT, lemma), position - first);
+            }
+            builder.add(phrase.build(), BooleanClause.Occur.MUST);
+        } else {
+            for (String lemma : lemmas) {
+                builder.add(new TermQuery(new Term(CONTENT, lemma)), BooleanClause.Occur.MUST);
+            }
+        }
+        if (site != null && !site.isEmpty()) {
+            builder.add(new TermQuery(new Term(SITE, site)), BooleanClause.Occur.FILTER);
+        }
+        return builder.build();
+    }
+
+    private static int count(IndexSearcher searcher, Query query) {
+        try {
+            return searcher.count(query);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static TopDocs topDocs(IndexSearcher searcher, Query query, int limit) {
+        try {
+            return searcher.search(query, limit);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static SearchResult toResult(Document doc, double relevance, List<int[]> keywords, SearchTrace trace) {
+        SearchResult result = new SearchResult();
+        result.setSite(doc.get(SITE));
+        result.setSiteName(doc.get(SITE_NAME));
+        result.setUri(doc.get(PATH));
+        result.setTitle(doc.get(TITLE));
+        result.setSnippet(trace.time(SearchTrace.Stage.SNIPPETS, () -> snippet(doc.get(TEXT), keywords)));
+        result.setRelevance(relevance);
+        return result;
+    }
+
+    /**
+     * Смещения {начало, конец} слов запроса в тексте страницы по вектору терминов, в порядке текста.
+     */
+    private static List<int[]> keywordOffsets(Terms terms, Set<String> lemmas) throws IOException {
+        List<int[]> offsets = new ArrayList<>();
+        if (terms == null) {
+            return offsets;
+        }
+        TermsEnum termsEnum = terms.iterator();
+        PostingsEnum postings = null;
+        for (String lemma : lemmas) {
+            if (!termsEnum.seekExact(new BytesRef(lemma))) {
+                continue;
+            }
+            postings = termsEnum.postings(postings, PostingsEnum.OFFSETS);
+            if (postings.nextDoc() == DocIdSetIterator.NO_MORE_DOCS) {
+                continue;
+            }
+            for (int i = 0; i < postings.freq(); i++) {
+                postings.nextPosition();
+                offsets.add(new int[]{postings.startOffset(), postings.endOffset()});
+            }
+        }
+        offsets.sort(Comparator.comparingInt(offset -> offset[0]));
+        return offsets;
+    }
+
+    /**
+     * Фрагмент текста вокруг первого найденного слова; слова запроса выделяются.
+     */
+    private static String snippet(String text, List<int[]> keywords) {
+        int keywordStart = keywords.isEmpty() ? 0 : keywords.get(0)[0];
+        int from = Math.max(0, keywordStart - SNIPPET_CONTEXT);
+        int to = Math.min(text.length(), keywordStart + SNIPPET_LENGTH);
+
+        StringBuilder snippet = new StringBuilder(to - from + 32);
+        int written = from;
+        for (int[] keyword : keywords) {
+            if (keyword[0] < from) {
+                continue;
+            }
+            if (keyword[1] > to) {
+                break;
+            }
+            snippet.append(text, written, keyword[0]).append("<b>").append(text, keyword[0], keyword[1]).append("</b>");
+            written = keyword[1];
+        }
+        snippet.append(text, written, to);
+        return snippet.toString().trim();
+    }
+
+    private void addSitePages(SiteEntity site) throws IOException {
+        Integer minId = pageRepository.findMinIdBySite(site);
+        Integer maxId = pageRepository.findMaxIdBySite(site);
+        if (minId == null || maxId == null) {
+            return;
+        }
+        for (int from = minId; from <= maxId; from += REBUILD_CHUNK) {
+            for (PageEntity page : pageRepository.findBySiteAndIdBetween(site, from, from + REBUILD_CHUNK - 1)) {
+                if (page.getCode() < 400) {
+                    writer.addDocument(document(site, page.getPath(), page.getContent()));
+                }
+            }
+        }
+    }
+
+    private static Document document(SiteEntity site, String path, String html) {
+        org.jsoup.nodes.Document parsed = Jsoup.parse(html);
+        String text = parsed.text();
+        Document doc = new Document();
+        doc.add(new StringField(KEY, site.getUrl() + path, Field.Store.NO));
+        doc.add(new StringField(SITE, site.getUrl(), Field.Store.YES));
+        doc.add(new StoredField(SITE_NAME, site.getName()));
+        doc.add(new StoredField(PATH, path));
+        doc.add(new StoredField(TITLE, parsed.title()));
+        doc.add(new StoredField(TEXT, text));
+        doc.add(new Field(CONTENT, text, CONTENT_TYPE));
+        return doc;
+    }
+
+    private static FieldType contentType() {
+        FieldType type = new FieldType(TextField.TYPE_NOT_STORED);
+        type.setStoreTermVectors(true);
+        type.setStoreTermVectorPositions(true);
+        type.setStoreTermVectorOffsets(true);
+        type.freeze();
+        return type;
+    }
+
+    private static boolean isCurrentFormat(Directory directory) throws IOException {
+        if (!DirectoryReader.indexExists(directory)) {
+            return true;
+        }
+        return FORMAT_VERSION.equals(SegmentInfos.readLatestCommit(directory).getUserData().get(FORMAT));
+    }
+
+    private void commit() throws IOException {
+        writer.commit();
+        searcherManager.maybeRefresh();
+    }
+}
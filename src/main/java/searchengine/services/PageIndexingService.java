@@ -1,128 +1,375 @@
 package searchengine.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Connection;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import searchengine.config.PageIndexingSettings;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
 import searchengine.config.UserConfig;
 import searchengine.dto.indexing.IndexingResponse;
-import searchengine.util.LemmaFinder;
-import searchengine.model.IndexEntity;
-import searchengine.model.LemmaEntity;
-import searchengine.model.PageEntity;
+import searchengine.dto.indexing.JobState;
+import searchengine.dto.indexing.PageBatchResponse;
+import searchengine.dto.indexing.PageBatchStatus;
+import searchengine.dto.indexing.PageOutcome;
 import searchengine.model.SiteEntity;
-import searchengine.repositories.IndexRepository;
-import searchengine.repositories.LemmaRepository;
-import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
 import searchengine.services.interfaces.PageIndexingServiceInterface;
+import searchengine.util.HostRateLimiter;
+import searchengine.util.LemmaFinder;
+import searchengine.util.PageBatchWriter;
 
 import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 @Service
 @Slf4j
 public class PageIndexingService implements PageIndexingServiceInterface {
 
+    private static final String OUTSIDE_SITES =
+            "Данная страница находится за пределами сайтов, указанных в конфигурационном файле";
+    private static final String SITE_INDEXING =
+            "По сайту идет полная индексация, страница будет проиндексирована ею";
+    private static final String SITE_NOT_INDEXED =
+            "Сайт еще не проиндексирован, сначала запустите полную индексацию";
+
     private final SitesList sitesList;
     private final SiteRepository siteRepository;
-    private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
     private final LemmaFinder lemmaFinder;
     private final UserConfig userConfig;
+    private final PageBatchWriter pageBatchWriter;
+    private final PageIndexingSettings settings;
+    private final IndexingService indexingService;
+    private final HostRateLimiter hostRateLimiter;
 
-    public PageIndexingService(SitesList sitesList, SiteRepository siteRepository, PageRepository pageRepository,
-                               LemmaRepository lemmaRepository, IndexRepository indexRepository,
-                               LemmaFinder lemmaFinder, UserConfig userConfig) {
+    private final ExecutorService jobExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("page-batch-", 0).factory());
+    private final ExecutorService lemmatizePool;
+    private final Semaphore fetchPermits;
+    private final Cache<String, BatchJob> jobs;
+
+    public PageIndexingService(SitesList sitesList, SiteRepository siteRepository, LemmaFinder lemmaFinder,
+                               UserConfig userConfig, PageBatchWriter pageBatchWriter,
+                               PageIndexingSettings settings, IndexingService indexingService,
+                               HostRateLimiter hostRateLimiter) {
         this.sitesList = sitesList;
         this.siteRepository = siteRepository;
-        this.pageRepository = pageRepository;
-        this.lemmaRepository = lemmaRepository;
-        this.indexRepository = indexRepository;
         this.lemmaFinder = lemmaFinder;
         this.userConfig = userConfig;
+        this.pageBatchWriter = pageBatchWriter;
+        this.settings = settings;
+        this.indexingService = indexingService;
+        this.hostRateLimiter = hostRateLimiter;
+        this.fetchPermits = new Semaphore(Math.max(settings.getFetchConcurrency(), 1));
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.lemmatizePool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "page-lemmatize-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.jobs = Caffeine.newBuilder()
+                .expireAfterWrite(settings.getJobRetention())
+                .build();
+    }
+
+    /**
+     * Скачанная страница или причина, по которой ее не удалось проиндексировать.
+     */
+    private record Fetched(int index, SiteEntity site, PageBatchWriter.ParsedPage page, PageOutcome outcome) {
+    }
+
+    /**
+     * Пакетная задача: исходы хранятся по позициям URL в запросе и заполняются по мере обработки.
+     */
+    private static final class BatchJob {
+        private final String id = UUID.randomUUID().toString();
+        private final long startedAt = System.currentTimeMillis();
+        private final List<String> urls;
+        private final AtomicReferenceArray<PageOutcome> outcomes;
+        private volatile Long finishedAt;
+
+        private BatchJob(List<String> urls) {
+            this.urls = urls;
+            this.outcomes = new AtomicReferenceArray<>(urls.size());
+        }
     }
 
     @Override
     public IndexingResponse indexPage(String url) {
-        try {
-            SiteEntity site = findSiteByUrl(url);
-            if (site == null) {
-                return new IndexingResponse(false,
-                        "Данная страница находится за пределами сайтов, указанных в конфигурационном файле",
-                        HttpStatus.BAD_REQUEST);
-            }
+        return toResponse(process(0, url).outcome());
+    }
+
+    @Override
+    public PageBatchResponse indexPages(List<String> urls) {
+        if (urls == null || urls.isEmpty()) {
+            throw new IllegalArgumentException("Список страниц пуст");
+        }
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(urls));
+        if (distinct.size() > settings.getMaxBatchSize()) {
+            throw new IllegalArgumentException("Слишком много страниц в одном запросе: " + distinct.size()
+                    + ", допускается не более " + settings.getMaxBatchSize());
+        }
+
+        BatchJob job = new BatchJob(List.copyOf(distinct));
+        jobs.put(job.id, job);
+        jobExecutor.execute(() -> run(job));
+        log.info("Пакетная индексация {}: {} страниц", job.id, distinct.size());
+        return new PageBatchResponse(true, job.id, distinct.size());
+    }
 
-            PageEntity oldPage = pageRepository.findByPathAndSite(url, site);
-            if (oldPage != null) {
-                indexRepository.deleteByPage(oldPage);
-                pageRepository.delete(oldPage);
+    @Override
+    public Optional<PageBatchStatus> batchStatus(String jobId) {
+        BatchJob job = jobs.getIfPresent(jobId);
+        if (job == null) {
+            return Optional.empty();
+        }
+        PageBatchStatus status = new PageBatchStatus();
+        status.setJobId(job.id);
+        status.setTotal(job.urls.size());
+        status.setStartedAt(job.startedAt);
+        status.setFinishedAt(job.finishedAt);
+        List<PageOutcome> pages = new ArrayList<>(job.urls.size());
+        int indexed = 0;
+        int failed = 0;
+        for (int i = 0; i < job.urls.size(); i++) {
+            PageOutcome outcome = job.outcomes.get(i);
+            if (outcome == null) {
+                continue;
+            }
+            pages.add(outcome);
+            if (outcome.isResult()) {
+                indexed++;
+            } else {
+                failed++;
             }
+        }
+        status.setState(job.finishedAt != null ? JobState.COMPLETED : JobState.RUNNING);
+        status.setProcessed(pages.size());
+        status.setIndexed(indexed);
+        status.setFailed(failed);
+        status.setPages(pages);
+        return Optional.of(status);
+    }
 
-            Document doc = Jsoup.connect(url)
-                    .userAgent(userConfig.getAgent())
-                    .referrer(userConfig.getReferer())
-                    .timeout(10000)
-                    .get();
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+        lemmatizePool.shutdownNow();
+    }
 
-            int statusCode = doc.connection().response().statusCode();
-            if (statusCode >= 400 && statusCode < 600) {
-                return new IndexingResponse(false, "Ошибка HTTP-код: " + statusCode, HttpStatus.valueOf(statusCode));
+    /**
+     * Скачивание идет параллельно в виртуальных потоках (не больше fetchConcurrency одновременно),
+     * лемматизация — в пуле по числу ядер. Готовые страницы копятся по сайтам и пишутся пачками
+     * по writeBatchSize в одной транзакции.
+     */
+    private void run(BatchJob job) {
+        BlockingQueue<Fetched> ready = new LinkedBlockingQueue<>();
+        for (int i = 0; i < job.urls.size(); i++) {
+            int index = i;
+            String url = job.urls.get(i);
+            CompletableFuture.supplyAsync(() -> fetch(index, url), jobExecutor)
+                    .thenApplyAsync(this::lemmatize, lemmatizePool)
+                    .exceptionally(e -> {
+                        log.error("Ошибка при обработке страницы: {}", url, e);
+                        return failed(index, url, null, "Ошибка при обработке страницы");
+                    })
+                    .thenAccept(ready::add);
+        }
+
+        Map<Integer, List<Fetched>> pending = new HashMap<>();
+        try {
+            for (int received = 0; received < job.urls.size(); received++) {
+                Fetched fetched = ready.take();
+                if (fetched.page() == null) {
+                    job.outcomes.set(fetched.index(), fetched.outcome());
+                    continue;
+                }
+                List<Fetched> batch = pending.computeIfAbsent(fetched.site().getId(), id -> new ArrayList<>());
+                batch.add(fetched);
+                if (batch.size() >= settings.getWriteBatchSize()) {
+                    write(job, batch);
+                    pending.remove(fetched.site().getId());
+                }
             }
+            pending.values().forEach(batch -> write(job, batch));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Пакетная индексация {} прервана", job.id);
+        } finally {
+            job.finishedAt = System.currentTimeMillis();
+            log.info("Пакетная индексация {} завершена за {} мс", job.id, job.finishedAt - job.startedAt);
+        }
+    }
 
-            String content = doc.outerHtml();
-            Map<String, Integer> lemmas = lemmaFinder.collectLemmas(lemmaFinder.cleanHtml(content));
+    private void write(BatchJob job, List<Fetched> batch) {
+        String error;
+        try {
+            error = writeLive(batch.get(0).site(), batch.stream().map(Fetched::page).toList());
+        } catch (RuntimeException e) {
+            log.error("Ошибка при записи пачки страниц сайта {}", batch.get(0).site().getUrl(), e);
+            error = "Ошибка при сохранении страницы";
+        }
+        for (Fetched fetched : batch) {
+            job.outcomes.set(fetched.index(), error == null ? fetched.outcome()
+                    : new PageOutcome(fetched.outcome().getUrl(), false, fetched.outcome().getCode(), error));
+        }
+    }
 
-            PageEntity page = new PageEntity();
-            page.setPath(url);
-            page.setCode(200);
-            page.setContent(content);
-            page.setSite(site);
-            pageRepository.save(page);
+    /**
+     * Пока по сайту идет полная индексация, запись в живое поколение отклоняется: после обхода оно
+     * заменяется новым и удаляется вместе со страницами пачки.
+     *
+     * @return причина отказа или null, если пачка записана
+     */
+    private String writeLive(SiteEntity site, List<PageBatchWriter.ParsedPage> pages) {
+        if (indexingService.isIndexing(site.getUrl())) {
+            return SITE_INDEXING;
+        }
+        return pageBatchWriter.write(site, pages) ? null : SITE_INDEXING;
+    }
 
-            updateLemmasAndIndices(lemmas, page);
+    /**
+     * Одиночная страница проходит тот же путь, что и пакет: скачивание, лемматизация, запись пачкой из одной.
+     */
+    private Fetched process(int index, String url) {
+        Fetched fetched = lemmatize(fetch(index, url));
+        if (fetched.page() != null) {
+            String error;
+            try {
+                error = writeLive(fetched.site(), List.of(fetched.page()));
+            } catch (RuntimeException e) {
+                log.error("Ошибка при сохранении страницы: {}", url, e);
+                error = "Ошибка при сохранении страницы";
+            }
+            if (error != null) {
+                return failed(index, url, null, error);
+            }
+        }
+        return fetched;
+    }
 
-            return new IndexingResponse(true, null, HttpStatus.OK);
+    private Fetched fetch(int index, String url) {
+        Site siteConfig = findSiteConfig(url);
+        if (siteConfig == null) {
+            return failed(index, url, null, OUTSIDE_SITES);
+        }
+        if (indexingService.isIndexing(siteConfig.getUrl())) {
+            return failed(index, url, null, SITE_INDEXING);
+        }
+        SiteEntity site = siteRepository.findByUrlAndLiveTrue(siteConfig.getUrl()).orElse(null);
+        if (site == null) {
+            return failed(index, url, null, SITE_NOT_INDEXED);
+        }
+
+        HostRateLimiter.Permit permit;
+        try {
+            fetchPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed(index, url, null, "Индексация страницы прервана");
+        }
+        try {
+            permit = hostRateLimiter.acquire(url);
+        } catch (InterruptedException e) {
+            fetchPermits.release();
+            Thread.currentThread().interrupt();
+            return failed(index, url, null, "Индексация страницы прервана");
+        }
+        HostRateLimiter.Outcome outcome = HostRateLimiter.Outcome.ERROR;
+        String retryAfter = null;
+        try {
+            Connection.Response response = Jsoup.connect(url)
+                    .userAgent(userConfig.getAgent())
+                    .referrer(userConfig.getReferer())
+                    .timeout(hostRateLimiter.timeoutMillis(url))
+                    .ignoreHttpErrors(true)
+                    .execute();
+            int statusCode = response.statusCode();
+            if (statusCode == 429 || statusCode == 503) {
+                outcome = HostRateLimiter.Outcome.THROTTLED;
+                retryAfter = response.header("Retry-After");
+            } else {
+                outcome = HostRateLimiter.Outcome.OK;
+            }
+            if (statusCode >= 400 && statusCode < 600) {
+                return failed(index, url, statusCode, "Ошибка HTTP-код: " + statusCode);
+            }
+            String content = response.parse().outerHtml();
+            PageBatchWriter.ParsedPage page = new PageBatchWriter.ParsedPage(
+                    url.replace(site.getUrl(), ""), statusCode, content, null, null);
+            return new Fetched(index, site, page, new PageOutcome(url, true, statusCode, null));
+        } catch (SocketTimeoutException e) {
+            outcome = HostRateLimiter.Outcome.TIMEOUT;
+            log.error("Таймаут при индексации страницы: {}", url);
+            return failed(index, url, null, "Ошибка при скачивании страницы");
         } catch (IOException e) {
             log.error("Ошибка при индексации страницы: {}", url, e);
-            return new IndexingResponse(false, "Ошибка при скачивании страницы", HttpStatus.INTERNAL_SERVER_ERROR);
+            return failed(index, url, null, "Ошибка при скачивании страницы");
+        } finally {
+            hostRateLimiter.release(permit, outcome, retryAfter);
+            fetchPermits.release();
         }
     }
 
-    private SiteEntity findSiteByUrl(String url) {
-        for (Site siteConfig : sitesList.getSites()) {
-            if (url.startsWith(siteConfig.getUrl())) {
-                return siteRepository.findByUrl(siteConfig.getUrl()).orElse(null);
-            }
+    private Fetched lemmatize(Fetched fetched) {
+        if (fetched.page() == null) {
+            return fetched;
         }
-        return null;
+        PageBatchWriter.ParsedPage page = fetched.page();
+        List<LemmaFinder.WordToken> tokens = lemmaFinder.tokenize(lemmaFinder.cleanHtml(page.content()));
+        return new Fetched(fetched.index(), fetched.site(),
+                new PageBatchWriter.ParsedPage(page.path(), page.code(), page.content(), tokens,
+                        lemmaFinder.groupPositions(tokens)),
+                fetched.outcome());
     }
 
-    private void processLemma(Map.Entry<String, Integer> entry, PageEntity page) {
-        String lemmaText = entry.getKey();
-        int frequency = entry.getValue();
-
-        LemmaEntity lemma = lemmaRepository.findByLemmaAndSite(lemmaText, page.getSite())
-                .orElse(new LemmaEntity());
-        lemma.setLemma(lemmaText);
-        lemma.setFrequency(lemma.getFrequency() + 1);
-        lemma.setSite(page.getSite());
-        lemmaRepository.save(lemma);
+    private static Fetched failed(int index, String url, Integer code, String error) {
+        return new Fetched(index, null, null, new PageOutcome(url, false, code, error));
+    }
 
-        IndexEntity indexEntity = new IndexEntity();
-        indexEntity.setPage(page);
-        indexEntity.setLemma(lemma);
-        indexEntity.setRanking((float) frequency);
-        indexRepository.save(indexEntity);
+    private static IndexingResponse toResponse(PageOutcome outcome) {
+        if (outcome.isResult()) {
+            return new IndexingResponse(true, null, HttpStatus.OK);
+        }
+        if (OUTSIDE_SITES.equals(outcome.getError())) {
+            return new IndexingResponse(false, outcome.getError(), HttpStatus.BAD_REQUEST);
+        }
+        if (SITE_INDEXING.equals(outcome.getError()) || SITE_NOT_INDEXED.equals(outcome.getError())) {
+            return new IndexingResponse(false, outcome.getError(), HttpStatus.CONFLICT);
+        }
+        HttpStatus status = outcome.getCode() == null ? null : HttpStatus.resolve(outcome.getCode());
+        if (status != null) {
+            return new IndexingResponse(false, outcome.getError(), status);
+        }
+        return new IndexingResponse(false, outcome.getError(), HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
-    private void updateLemmasAndIndices(Map<String, Integer> lemmas, PageEntity page) {
-        for (Map.Entry<String, Integer> entry : lemmas.entrySet()) {
-            processLemma(entry, page);
+    private Site findSiteConfig(String url) {
+        for (Site siteConfig : sitesList.getSites()) {
+            if (url.startsWith(siteConfig.getUrl())) {
+                return siteConfig;
+            }
         }
+        return null;
     }
 }
@@ -0,0 +1,218 @@
+package searchengine.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+import searchengine.config.CrawlerSettings;
+import searchengine.config.Site;
+import searchengine.config.SiteSchedule;
+import searchengine.config.SitesList;
+import searchengine.dto.indexing.JobState;
+import searchengine.dto.indexing.ScheduledSiteStatus;
+import searchengine.model.SiteEntity;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.interfaces.RefreshSchedulerServiceInterface;
+import searchengine.util.CrawlerMetrics;
+import searchengine.util.IncrementalCrawler;
+import searchengine.util.IndexingJob;
+
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновая инкрементальная переиндексация сайтов по расписанию из indexing-settings.sites[].schedule.
+ * Раз в schedulerTick готовые к запуску сайты сортируются по приоритету и запускаются, пока хватает
+ * общего бюджета maxConcurrentRefreshes; остальные ждут следующего тика. Следующий запуск сайта
+ * отсчитывается от окончания предыдущего, поэтому запуски одного сайта не перекрываются.
+ */
+@Slf4j
+@Service
+public class RefreshSchedulerService implements RefreshSchedulerServiceInterface {
+
+    private final SiteRepository siteRepository;
+    private final IncrementalCrawler incrementalCrawler;
+    private final IndexingService indexingService;
+    private final CrawlerMetrics crawlerMetrics;
+    private final CrawlerSettings crawlerSettings;
+
+    private final List<ScheduledSite> scheduledSites = new ArrayList<>();
+    private final Semaphore budget;
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService workers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("site-refresh-", 0).factory());
+
+    /**
+     * Сайт с расписанием и состояние его последнего запуска.
+     */
+    private static final class ScheduledSite {
+        private final Site config;
+        private final SiteSchedule schedule;
+        private final CronExpression cron;
+        private volatile long nextRunAt;
+        private volatile boolean running;
+        private volatile IndexingJob lastJob;
+
+        private ScheduledSite(Site config) {
+            this.config = config;
+            this.schedule = config.getSchedule();
+            boolean hasInterval = schedule.getInterval() != null;
+            boolean hasCron = schedule.getCron() != null && !schedule.getCron().isBlank();
+            if (hasInterval == hasCron) {
+                throw new IllegalStateException("Для сайта " + config.getUrl()
+                        + " в расписании нужно указать либо interval, либо cron");
+            }
+            this.cron = hasCron ? CronExpression.parse(schedule.getCron()) : null;
+            scheduleNext();
+        }
+
+        private void scheduleNext() {
+            if (cron == null) {
+                nextRunAt = System.currentTimeMillis() + schedule.getInterval().toMillis();
+                return;
+            }
+            ZonedDateTime next = cron.next(ZonedDateTime.now());
+            nextRunAt = next == null ? Long.MAX_VALUE : next.toInstant().toEpochMilli();
+        }
+    }
+
+    public RefreshSchedulerService(SitesList sitesList, SiteRepository siteRepository,
+                                   IncrementalCrawler incrementalCrawler, IndexingService indexingService,
+                                   CrawlerMetrics crawlerMetrics, CrawlerSettings crawlerSettings) {
+        this.siteRepository = siteRepository;
+        this.incrementalCrawler = incrementalCrawler;
+        this.indexingService = indexingService;
+        this.crawlerMetrics = crawlerMetrics;
+        this.crawlerSettings = crawlerSettings;
+        this.budget = new Semaphore(Math.max(sitesList.getMaxConcurrentRefreshes(), 1));
+
+        if (sitesList.getSites() != null) {
+            for (Site site : sitesList.getSites()) {
+                if (site.getSchedule() != null) {
+                    scheduledSites.add(new ScheduledSite(site));
+                }
+            }
+        }
+
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "indexing-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!scheduledSites.isEmpty()) {
+            long tick = sitesList.getSchedulerTick().toMillis();
+            ticker.scheduleWithFixedDelay(this::tick, tick, tick, TimeUnit.MILLISECONDS);
+            log.info("Расписание переиндексации: {} сайт(ов), одновременно не больше {}",
+                    scheduledSites.size(), sitesList.getMaxConcurrentRefreshes());
+        }
+    }
+
+    @Override
+    public List<ScheduledSiteStatus> schedule() {
+        List<ScheduledSiteStatus> statuses = new ArrayList<>();
+        for (ScheduledSite scheduled : scheduledSites) {
+            ScheduledSiteStatus status = new ScheduledSiteStatus();
+            status.setUrl(scheduled.config.getUrl());
+            status.setPriority(scheduled.schedule.getPriority());
+            status.setInterval(scheduled.schedule.getInterval() == null
+                    ? null : scheduled.schedule.getInterval().toString());
+            status.setCron(scheduled.schedule.getCron());
+            status.setMaxPages(scheduled.schedule.getMaxPages());
+            status.setRunning(scheduled.running);
+            status.setNextRunAt(scheduled.nextRunAt);
+            IndexingJob lastJob = scheduled.lastJob;
+            status.setLastRun(lastJob == null ? null : lastJob.toStatus());
+            statuses.add(status);
+        }
+        return statuses;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        for (ScheduledSite scheduled : scheduledSites) {
+            IndexingJob job = scheduled.lastJob;
+            if (job != null && !job.isDone()) {
+                job.cancel("Приложение остановлено");
+            }
+        }
+        workers.shutdown();
+    }
+
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            List<ScheduledSite> due = scheduledSites.stream()
+                    .filter(scheduled -> !scheduled.running && scheduled.nextRunAt <= now)
+                    .sorted(Comparator.comparingInt((ScheduledSite scheduled) -> scheduled.schedule.getPriority())
+                            .reversed()
+                            .thenComparingLong(scheduled -> scheduled.nextRunAt))
+                    .toList();
+            for (ScheduledSite scheduled : due) {
+                if (!budget.tryAcquire()) {
+                    break;
+                }
+                if (!launch(scheduled)) {
+                    budget.release();
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Ошибка планировщика переиндексации", e);
+        }
+    }
+
+    /**
+     * Сайт пропускает запуск, пока по нему идет полная индексация или у него еще нет живого поколения.
+     */
+    private boolean launch(ScheduledSite scheduled) {
+        String url = scheduled.config.getUrl();
+        if (indexingService.isIndexing(url)) {
+            scheduled.scheduleNext();
+            return false;
+        }
+        Optional<SiteEntity> live = siteRepository.findByUrlAndLiveTrue(url);
+        if (live.isEmpty()) {
+            log.debug("Сайт {} еще не проиндексирован, инкрементальный запуск пропущен", url);
+            scheduled.scheduleNext();
+            return false;
+        }
+
+        IndexingJob job = new IndexingJob(live.get());
+        job.start();
+        scheduled.lastJob = job;
+        scheduled.running = true;
+        workers.execute(() -> refresh(scheduled, job));
+        return true;
+    }
+
+    private void refresh(ScheduledSite scheduled, IndexingJob job) {
+        String url = scheduled.config.getUrl();
+        JobState outcome = JobState.FAILED;
+        String error = null;
+        try {
+            Integer maxDepth = scheduled.config.getMaxDepth();
+            IncrementalCrawler.Result result = incrementalCrawler.crawl(job.site(),
+                    scheduled.schedule.getMaxPages(), maxDepth != null ? maxDepth : crawlerSettings.getMaxDepth(), job);
+            outcome = JobState.COMPLETED;
+            log.info("Инкрементальная переиндексация {}: скачано {}, изменилось {}, удалено {}, ошибок {}",
+                    url, result.fetched(), result.changed(), result.removed(), result.failed());
+        } catch (RuntimeException e) {
+            log.error("Ошибка инкрементальной переиндексации сайта {}", url, e);
+            error = e.getMessage();
+        } finally {
+            long nanos = job.finish(outcome, error);
+            crawlerMetrics.recordJob(url, "incremental", job.state().name(), nanos);
+            scheduled.scheduleNext();
+            scheduled.running = false;
+            budget.release();
+        }
+    }
+}
@@ -5,18 +5,29 @@ import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.springframework.stereotype.Service;
+import searchengine.config.SearchSettings;
 import searchengine.config.SitesList;
+import searchengine.dto.search.IndexPosting;
+import searchengine.dto.search.SearchCursor;
+import searchengine.dto.search.SearchDebug;
+import searchengine.dto.search.SearchRequest;
 import searchengine.dto.search.SearchResult;
 import searchengine.dto.search.SearchResponse;
-import searchengine.model.IndexEntity;
-import searchengine.model.LemmaEntity;
 import searchengine.model.PageEntity;
 import searchengine.repositories.IndexRepository;
 import searchengine.repositories.LemmaRepository;
 import searchengine.repositories.PageRepository;
 import searchengine.services.interfaces.SearchServiceInterface;
+import searchengine.services.interfaces.SearchStreamListener;
 import searchengine.util.CacheManagement;
+import searchengine.util.IndexSnapshot;
 import searchengine.util.LemmaFinder;
+import searchengine.util.PositionCodec;
+import searchengine.util.ProximityMatcher;
+import searchengine.util.RankedPages;
+import searchengine.util.SearchExecutor;
+import searchengine.util.SearchTrace;
+import searchengine.util.TokenOffsets;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -33,47 +44,96 @@ public class SearchService implements SearchServiceInterface {
     private final LemmaFinder lemmaFinder;
     private final SitesList sitesList;
     private final CacheManagement cacheManagement;
+    private final SearchExecutor searchExecutor;
+    private final SearchSettings searchSettings;
+    private final IndexSnapshot indexSnapshot;
 
-    private Map<PageEntity, List<IndexEntity>> indicesByPage;
+    private static final int SNIPPET_LENGTH = 300;
+    private static final int SNIPPET_CONTEXT = 150;
+    private static final double PROXIMITY_WEIGHT = 0.5;
 
     @Override
-    public SearchResponse search(String query, String site, int offset, int limit) {
-        validateSearchParameters(query);
+    public SearchResponse search(SearchRequest request) {
+        SearchResponse response = new SearchResponse(true, 0, new ArrayList<>(), null, null);
+        streamSearch(request, new SearchStreamListener() {
+            @Override
+            public void onCount(int count, String nextCursor) {
+                response.setCount(count);
+                response.setSearchAfter(nextCursor);
+            }
 
-        List<SearchResult> allResults = new ArrayList<>();
-        String cacheKey = generateCacheKey(query, site);
+            @Override
+            public void onResult(SearchResult result) {
+                response.getData().add(result);
+            }
 
-        if (site == null || site.isEmpty()) {
-            List<SearchResult> cachedResults = cacheManagement.getAllSitesSearchResultsFromCache(cacheKey);
-            if (cachedResults != null) {
-                allResults.addAll(cachedResults);
-            } else {
-                for (searchengine.config.Site currentSite : sitesList.getSites()) {
-                    List<SearchResult> siteResults = performSearch(query, currentSite.getUrl());
-                    allResults.addAll(siteResults);
-                }
-                cacheManagement.putAllSitesSearchResultsInCache(cacheKey, allResults);
+            @Override
+            public void onDebug(SearchDebug debug) {
+                response.setDebug(debug);
             }
-        } else {
-            List<SearchResult> cachedResults = cacheManagement.getSingleSiteSearchResultsFromCache(cacheKey);
-            if (cachedResults != null) {
-                allResults.addAll(cachedResults);
-            } else {
-                List<SearchResult> siteResults = performSearch(query, site);
-                allResults.addAll(siteResults);
-                cacheManagement.putSingleSiteSearchResultsInCache(cacheKey, allResults);
+        });
+        return response;
+    }
+
+    /**
+     * Количество результатов отдается сразу после ранжирования, затем результаты по одному
+     * в порядке релевантности, по мере готовности сниппетов.
+     */
+    @Override
+    public void streamSearch(SearchRequest request, SearchStreamListener listener) {
+        validateSearchParameters(request.getQuery());
+        searchExecutor.admit(deadline -> {
+            SearchTrace trace = new SearchTrace();
+            executeSearch(request, listener, deadline, trace);
+            if (request.isDebug()) {
+                listener.onDebug(trace.toDebug());
             }
+            logSlowQuery(request, trace);
+        });
+    }
+
+    private void executeSearch(SearchRequest request, SearchStreamListener listener, long deadline, SearchTrace trace) {
+        String query = request.getQuery();
+        String site = request.getSite();
+        SearchQuery searchQuery = trace.time(SearchTrace.Stage.LEMMATIZATION,
+                () -> SearchQuery.parse(query, lemmaFinder.tokenize(query)));
+        String searchAfter = request.getSearchAfter();
+        SearchCursor cursor = (searchAfter == null || searchAfter.isEmpty()) ? null : SearchCursor.decode(searchAfter);
+        // Поколение читается до снимка: изменения индекса сначала сбрасывают снимок, потом меняют поколение,
+        // поэтому выдача по старому снимку не попадет в кэш под новым поколением.
+        long generation = cacheManagement.getIndexGeneration();
+        IndexSnapshot.Segment segment = indexSnapshot.current();
+        Ranking ranking = rankPages(searchQuery, site, cursor, generation, segment, trace);
+        RankedPages rankedPages = ranking.pages();
+        trace.count("rankedPages", rankedPages.size());
+        searchExecutor.checkDeadline(deadline);
+
+        int from = cursor == null
+                ? Math.min(Math.max(request.getOffset(), 0), rankedPages.size())
+                : rankedPages.positionAfter(cursor.score(), cursor.pageId());
+        int to = (int) Math.min(rankedPages.size(), (long) from + Math.max(request.getLimit(), 0));
+
+        String nextCursor = null;
+        if (to > from && to < rankedPages.size()) {
+            nextCursor = new SearchCursor(rankedPages.score(to - 1), rankedPages.pageId(to - 1),
+                    ranking.generation()).encode();
         }
+        listener.onCount(rankedPages.size(), nextCursor);
 
-        int totalResults = allResults.size();
+        searchExecutor.awaitAll(renderResults(rankedPages, searchQuery, from, to, segment, trace), deadline,
+                listener::onResult);
 
-        List<SearchResult> paginatedResults = allResults.stream()
-                .skip(offset)
-                .limit(limit)
-                .collect(Collectors.toList());
+        log.info("Поиск завершен по запросу: '{}', site: '{}', offset: {}, limit: {}",
+                query, site, from, request.getLimit());
+    }
 
-        log.info("Поиск завершен по запросу: '{}', site: '{}', offset: {}, limit: {}", query, site, offset, limit);
-        return new SearchResponse(true, totalResults, paginatedResults);
+    private void logSlowQuery(SearchRequest request, SearchTrace trace) {
+        long elapsed = trace.elapsedMillis();
+        if (elapsed >= searchSettings.getSlowQueryThreshold().toMillis()) {
+            log.warn("Медленный поисковый запрос ({} мс): query: '{}', site: '{}', offset: {}, limit: {}; {}",
+                    elapsed, request.getQuery(), request.getSite(), request.getOffset(), request.getLimit(),
+                    trace.describe());
+        }
     }
 
     private void validateSearchParameters(String query) {
@@ -82,67 +142,126 @@ public class SearchService implements SearchServiceInterface {
         }
     }
 
-    private String generateCacheKey(String query, String site) {
+    /**
+     * Ранжирование берется из кэша; для продолжения по курсору сначала ищется ранжирование
+     * того поколения индекса, по которому была отдана предыдущая страница. Без кэша страницы
+     * ищутся в снимке индекса, а если он не актуален — в БД.
+     */
+    private Ranking rankPages(SearchQuery searchQuery, String site, SearchCursor cursor, long generation,
+                              IndexSnapshot.Segment segment, SearchTrace trace) {
+        if (searchQuery.lemmas().isEmpty()) {
+            return new Ranking(RankedPages.EMPTY, generation);
+        }
+        boolean phrase = searchQuery.phrase() != null;
+        if (cursor != null && cursor.generation() != generation) {
+            RankedPages snapshot = trace.time(SearchTrace.Stage.CACHE_LOOKUP, () -> cacheManagement.getSearchResultsFromCache(
+                    cacheManagement.searchCacheKey(searchQuery.cacheLemmas(), site, phrase, cursor.generation())));
+            if (snapshot != null) {
+                trace.setCacheHit(true);
+                return new Ranking(snapshot, cursor.generation());
+            }
+        }
+
+        CacheManagement.SearchCacheKey cacheKey = cacheManagement.searchCacheKey(searchQuery.cacheLemmas(), site, phrase,
+                generation);
+        RankedPages cachedPages = trace.time(SearchTrace.Stage.CACHE_LOOKUP,
+                () -> cacheManagement.getSearchResultsFromCache(cacheKey));
+        if (cachedPages != null) {
+            trace.setCacheHit(true);
+            return new Ranking(cachedPages, cacheKey.generation());
+        }
+
+        List<String> sortedLemmas = trace.time(SearchTrace.Stage.SORT_LEMMAS,
+                () -> sortLemmasByFrequency(searchQuery.lemmas(), segment));
+        Map<Integer, Double> relevanceByPage = new HashMap<>();
         if (site == null || site.isEmpty()) {
-            return "all_sites_" + query;
+            for (searchengine.config.Site currentSite : sitesList.getSites()) {
+                scorePages(searchQuery, sortedLemmas, currentSite.getUrl(), segment, relevanceByPage, trace);
+            }
         } else {
-            return site + "_" + query;
+            scorePages(searchQuery, sortedLemmas, site, segment, relevanceByPage, trace);
+        }
+
+        int[] pageIds = new int[relevanceByPage.size()];
+        double[] relevance = new double[relevanceByPage.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Double> entry : relevanceByPage.entrySet()) {
+            pageIds[i] = entry.getKey();
+            relevance[i++] = entry.getValue();
         }
+        RankedPages rankedPages = RankedPages.of(pageIds, relevance);
+        cacheManagement.putSearchResultsInCache(cacheKey, rankedPages);
+        return new Ranking(rankedPages, cacheKey.generation());
     }
 
-    public List<SearchResult> performSearch(String query, String site) {
-        Set<String> lemmas = lemmaFinder.getLemmaSet(query);
-        List<String> sortedLemmas = sortLemmasByFrequency(lemmas);
+    private void scorePages(SearchQuery searchQuery, List<String> sortedLemmas, String site,
+                            IndexSnapshot.Segment segment, Map<Integer, Double> relevanceByPage, SearchTrace trace) {
+        Map<Integer, List<IndexPosting>> postingsByPage;
+        if (segment != null) {
+            postingsByPage = trace.time(SearchTrace.Stage.FIND_PAGES,
+                    () -> segment.matchingPages(sortedLemmas, site));
+            trace.count("candidatePages", postingsByPage.size());
+        } else {
+            List<Integer> pageIds = trace.time(SearchTrace.Stage.FIND_PAGES,
+                    () -> pageRepository.findPageIdsByLemmasAndSite(sortedLemmas, site, sortedLemmas.size()));
+            trace.count("candidatePages", pageIds.size());
+            if (pageIds.isEmpty()) {
+                return;
+            }
+            postingsByPage = trace.time(SearchTrace.Stage.FIND_POSTINGS,
+                    () -> findPostings(pageIds, sortedLemmas, null));
+        }
+        trace.time(SearchTrace.Stage.SCORING, () -> {
+            for (Map.Entry<Integer, List<IndexPosting>> entry : postingsByPage.entrySet()) {
+                Map<String, int[]> positions = decodePositions(entry.getValue());
+                if (searchQuery.phrase() != null && !searchQuery.phrase().matches(positions)) {
+                    continue;
+                }
+                int[] window = ProximityMatcher.minimalWindow(new ArrayList<>(positions.values()));
+                relevanceByPage.put(entry.getKey(), calculateRelevance(entry.getValue(), window, positions.size()));
+            }
+            return null;
+        });
+    }
 
-        List<PageEntity> pages = findPagesByLemma(lemmas, site);
-        if (pages.isEmpty()) {
+    private List<CompletableFuture<SearchResult>> renderResults(RankedPages rankedPages, SearchQuery searchQuery,
+                                                                int from, int to, IndexSnapshot.Segment segment,
+                                                                SearchTrace trace) {
+        if (from >= to) {
             return Collections.emptyList();
         }
 
-        List<LemmaEntity> lemmaEntities = lemmas.stream()
-                .map(lemma -> cacheManagement.getLemmaFromCache(lemma))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
-
-        if (lemmaEntities.isEmpty()) {
-            lemmaEntities = lemmaRepository.findByLemmaIn(new ArrayList<>(lemmas));
-            lemmaEntities.forEach(lemma -> cacheManagement.putLemmaInCache(lemma.getLemma(), lemma));
+        List<Integer> pageIds = new ArrayList<>(to - from);
+        for (int rank = from; rank < to; rank++) {
+            pageIds.add(rankedPages.pageId(rank));
         }
+        Map<Integer, PageEntity> pagesById = trace.time(SearchTrace.Stage.LOAD_PAGES,
+                () -> pageRepository.findAllById(pageIds).stream()
+                        .collect(Collectors.toMap(PageEntity::getId, page -> page)));
+        Map<Integer, List<IndexPosting>> postingsByPage = trace.time(SearchTrace.Stage.LOAD_PAGES,
+                () -> findPostings(pageIds, new ArrayList<>(searchQuery.lemmas()), segment));
+        trace.count("renderedPages", pagesById.size());
 
-        List<IndexEntity> allIndices = indexRepository.findByPagesAndLemmas(pages, sortedLemmas);
-        this.indicesByPage = allIndices.stream()
-                .collect(Collectors.groupingBy(IndexEntity::getPage));
-
-        double maxRelevance = 0.0;
         List<CompletableFuture<SearchResult>> futureResults = new ArrayList<>();
-
-        for (PageEntity page : pages) {
-            double relevance = calculateRelevance(page, lemmaEntities);
-            if (relevance > maxRelevance) {
-                maxRelevance = relevance;
+        for (int rank = from; rank < to; rank++) {
+            PageEntity page = pagesById.get(rankedPages.pageId(rank));
+            if (page == null) {
+                continue;
             }
-            futureResults.add(createSearchResultAsync(page, relevance, sortedLemmas));
+            List<IndexPosting> postings = postingsByPage.getOrDefault(page.getId(), Collections.emptyList());
+            int[] window = ProximityMatcher.minimalWindow(new ArrayList<>(decodePositions(postings).values()));
+            Set<Long> lemmaIds = postings.stream()
+                    .map(IndexPosting::lemmaId)
+                    .collect(Collectors.toSet());
+            futureResults.add(createSearchResultAsync(page, rankedPages.score(rank), lemmaIds, window, trace));
         }
-
-        List<SearchResult> searchResults = futureResults.stream()
-                .map(CompletableFuture::join)
-                .collect(Collectors.toList());
-
-        if (maxRelevance > 0.0) {
-            for (SearchResult result : searchResults) {
-                result.setRelevance(result.getRelevance() / maxRelevance);
-            }
-        }
-
-        searchResults.sort(Comparator.comparingDouble(SearchResult::getRelevance).reversed());
-
-        return searchResults;
+        return futureResults;
     }
 
-    private List<String> sortLemmasByFrequency(Set<String> lemmas) {
+    private List<String> sortLemmasByFrequency(Set<String> lemmas, IndexSnapshot.Segment segment) {
         Map<String, Integer> lemmaFrequencyMap = new HashMap<>();
         for (String lemma : lemmas) {
-            int frequency = lemmaRepository.countByLemma(lemma);
+            int frequency = segment != null ? segment.documentFrequency(lemma) : lemmaRepository.countByLemma(lemma);
             lemmaFrequencyMap.put(lemma, frequency);
         }
 
@@ -152,94 +271,164 @@ public class SearchService implements SearchServiceInterface {
                 .collect(Collectors.toList());
     }
 
-    private List<PageEntity> findPagesByLemma(Set<String> lemmas, String site) {
-        return pageRepository.findPagesByLemmasAndSite(new ArrayList<>(lemmas), site, lemmas.size());
+    private Map<Integer, List<IndexPosting>> findPostings(List<Integer> pageIds, List<String> lemmas,
+                                                          IndexSnapshot.Segment segment) {
+        List<IndexPosting> postings = segment != null
+                ? segment.postings(lemmas, new HashSet<>(pageIds))
+                : indexRepository.findPostingsByPageIdsAndLemmas(pageIds, lemmas);
+        return postings.stream()
+                .collect(Collectors.groupingBy(IndexPosting::pageId));
     }
 
-    private double calculateRelevance(PageEntity page, List<LemmaEntity> lemmaEntities) {
-        List<IndexEntity> indices = this.indicesByPage.get(page);
-
-        if (indices == null || indices.isEmpty()) {
-            return 0.0;
+    private Map<String, int[]> decodePositions(List<IndexPosting> postings) {
+        Map<String, int[]> positions = new HashMap<>();
+        for (IndexPosting posting : postings) {
+            positions.put(posting.lemma(), PositionCodec.decode(posting.positions()));
         }
+        return positions;
+    }
 
-        Set<Long> lemmaIds = lemmaEntities.stream()
-                .map(LemmaEntity::getId)
-                .collect(Collectors.toSet());
-
-        return indices.stream()
-                .filter(index -> lemmaIds.contains(index.getLemma().getId()))
-                .mapToDouble(IndexEntity::getRanking)
+    private double calculateRelevance(List<IndexPosting> postings, int[] window, int lemmaCount) {
+        double relevance = postings.stream()
+                .mapToDouble(IndexPosting::ranking)
                 .sum();
+
+        if (window != null && lemmaCount > 1) {
+            int span = window[1] - window[0];
+            relevance *= 1.0 + PROXIMITY_WEIGHT * (lemmaCount - 1) / Math.max(span, lemmaCount - 1);
+        }
+        return relevance;
     }
 
-    private CompletableFuture<SearchResult> createSearchResultAsync(PageEntity page, double relevance, List<String> sortedLemmas) {
-        return CompletableFuture.supplyAsync(() -> createSearchResult(page, relevance, sortedLemmas));
+    private CompletableFuture<SearchResult> createSearchResultAsync(PageEntity page, double relevance,
+                                                                    Set<Long> lemmaIds, int[] window,
+                                                                    SearchTrace trace) {
+        return searchExecutor.render(() -> createSearchResult(page, relevance, lemmaIds, window, trace));
     }
 
-    private SearchResult createSearchResult(PageEntity page, double relevance, List<String> sortedLemmas) {
+    private SearchResult createSearchResult(PageEntity page, double relevance, Set<Long> lemmaIds, int[] window,
+                                            SearchTrace trace) {
+        Document document = trace.time(SearchTrace.Stage.SNIPPETS, () -> Jsoup.parse(page.getContent()));
+        String cleanContent = trace.time(SearchTrace.Stage.SNIPPETS, document::text);
+
         SearchResult result = new SearchResult();
         result.setSite(page.getSite().getUrl());
         result.setSiteName(page.getSite().getName());
         result.setUri(page.getPath());
-        result.setTitle(extractTitle(page.getContent()));
-        result.setSnippet(createSnippet(page.getContent(), sortedLemmas));
+        result.setTitle(document.title());
+        result.setSnippet(trace.time(SearchTrace.Stage.HIGHLIGHT, () -> createSnippet(cleanContent,
+                TokenOffsets.decode(page.getTokenOffsets()), lemmaIds, window)));
         result.setRelevance(relevance);
         return result;
     }
 
-    private String extractTitle(String content) {
-        Document document = Jsoup.parse(content);
-        return document.title();
+    private String createSnippet(String cleanContent, TokenOffsets tokens, Set<Long> lemmaIds, int[] window) {
+        int snippetStart = 0;
+        int snippetEnd = Math.min(cleanContent.length(), SNIPPET_LENGTH);
+
+        if (window != null && window[1] < tokens.size()) {
+            int keywordStart = tokens.start(window[0]);
+            int keywordEnd = Math.min(tokens.end(window[1]), keywordStart + SNIPPET_LENGTH);
+            snippetStart = Math.max(0, keywordStart - SNIPPET_CONTEXT);
+            snippetEnd = Math.min(cleanContent.length(), keywordEnd + SNIPPET_CONTEXT);
+        }
+        return highlightKeywords(cleanContent, snippetStart, snippetEnd, tokens, lemmaIds);
     }
 
-    private String createSnippet(String content, List<String> sortedLemmas) {
-        String cleanContent = Jsoup.parse(content).text();
-        String bestSnippet = "";
-        for (String lemma : sortedLemmas) {
-            int keywordIndex = cleanContent.indexOf(lemma);
-            if (keywordIndex != -1) {
-                int snippetStart = Math.max(0, keywordIndex - 150);
-                int snippetEnd = Math.min(cleanContent.length(), keywordIndex + lemma.length() + 150);
-                bestSnippet = cleanContent.substring(snippetStart, snippetEnd);
-                bestSnippet = highlightKeywords(bestSnippet, sortedLemmas);
-                return bestSnippet;
+    private String highlightKeywords(String text, int from, int to, TokenOffsets tokens, Set<Long> lemmaIds) {
+        StringBuilder snippetBuilder = new StringBuilder(to - from + 32);
+        int written = from;
+        boolean highlightOpen = false;
+
+        for (int token = tokens.firstAtOrAfter(from); token < tokens.size() && tokens.end(token) <= to; token++) {
+            if (!lemmaIds.contains(tokens.lemmaId(token))) {
+                continue;
+            }
+            int start = tokens.start(token);
+            String gap = text.substring(written, start);
+            if (highlightOpen && !gap.isBlank()) {
+                snippetBuilder.append("</b>");
+                highlightOpen = false;
             }
+            snippetBuilder.append(gap);
+            if (!highlightOpen) {
+                snippetBuilder.append("<b>");
+                highlightOpen = true;
+            }
+            snippetBuilder.append(text, start, tokens.end(token));
+            written = tokens.end(token);
         }
-        if (cleanContent.length() > 300) {
-            bestSnippet = cleanContent.substring(0, 300);
+        if (highlightOpen) {
+            snippetBuilder.append("</b>");
         }
-        bestSnippet = highlightKeywords(bestSnippet, sortedLemmas);
-        return bestSnippet;
+        snippetBuilder.append(text, written, to);
+        return snippetBuilder.toString().trim();
+    }
+
+    private record Ranking(RankedPages pages, long generation) {
     }
 
-    private String highlightKeywords(String snippet, List<String> sortedLemmas) {
-        StringBuilder snippetBuilder = new StringBuilder();
-        String[] words = snippet.split("\\s+");
-        boolean previousWordWasHighlighted = false;
+    /**
+     * Разобранный запрос: леммы и, для запроса в кавычках, фраза.
+     */
+    private record SearchQuery(Set<String> lemmas, PhraseQuery phrase) {
+
+        static SearchQuery parse(String query, List<LemmaFinder.WordToken> tokens) {
+            Set<String> lemmas = tokens.stream()
+                    .map(LemmaFinder.WordToken::lemma)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            String trimmed = query.trim();
+            boolean quoted = trimmed.length() > 1 && trimmed.startsWith("\"") && trimmed.endsWith("\"");
+            return new SearchQuery(lemmas, quoted && !lemmas.isEmpty() ? PhraseQuery.of(tokens) : null);
+        }
 
-        for (String word : words) {
-            List<String> lemmas = lemmaFinder.getLemmaSet(word).stream().toList();
-            String lemma = lemmas.isEmpty() ? word : lemmas.get(0);
-            boolean highlightWord = sortedLemmas.contains(lemma);
+        List<String> cacheLemmas() {
+            return phrase == null ? new ArrayList<>(lemmas) : phrase.cacheLemmas();
+        }
+    }
 
-            if (highlightWord) {
-                if (!previousWordWasHighlighted) {
-                    snippetBuilder.append("<b>");
+    /**
+     * Фразовый запрос в кавычках: леммы в порядке запроса и их смещения относительно первого слова.
+     */
+    private record PhraseQuery(List<String> lemmas, int[] offsets) {
+
+        static PhraseQuery of(List<LemmaFinder.WordToken> tokens) {
+            List<String> lemmas = new ArrayList<>();
+            List<Integer> offsets = new ArrayList<>();
+            int first = -1;
+            for (int position = 0; position < tokens.size(); position++) {
+                String lemma = tokens.get(position).lemma();
+                if (lemma == null) {
+                    continue;
                 }
-                snippetBuilder.append(word).append(" ");
-                previousWordWasHighlighted = true;
-            } else {
-                if (previousWordWasHighlighted) {
-                    snippetBuilder.append("</b>");
+                if (first < 0) {
+                    first = position;
                 }
-                snippetBuilder.append(word).append(" ");
-                previousWordWasHighlighted = false;
+                lemmas.add(lemma);
+                offsets.add(position - first);
             }
+            return new PhraseQuery(lemmas, offsets.stream().mapToInt(Integer::intValue).toArray());
         }
-        if (previousWordWasHighlighted) {
-            snippetBuilder.append("</b>");
+
+        List<String> cacheLemmas() {
+            List<String> keyLemmas = new ArrayList<>(lemmas.size());
+            for (int i = 0; i < lemmas.size(); i++) {
+                keyLemmas.add(lemmas.get(i) + "@" + offsets[i]);
+            }
+            return keyLemmas;
+        }
+
+        boolean matches(Map<String, int[]> positions) {
+            List<int[]> lemmaPositions = new ArrayList<>();
+            for (String lemma : lemmas) {
+                int[] list = positions.get(lemma);
+                if (list == null) {
+                    return false;
+                }
+                lemmaPositions.add(list);
+            }
+            return ProximityMatcher.containsPhrase(lemmaPositions, offsets);
         }
-        return snippetBuilder.toString().trim();
     }
-}
\ No newline at end of file
+}
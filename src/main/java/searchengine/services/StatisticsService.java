@@ -3,8 +3,13 @@ package searchengine.services;
 import java.util.Date;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
 
+import searchengine.config.StatisticsSettings;
 import searchengine.dto.statistics.DetailedStatisticsItem;
+import searchengine.dto.statistics.SiteCount;
 import searchengine.dto.statistics.StatisticsData;
 import searchengine.dto.statistics.StatisticsResponse;
 import searchengine.dto.statistics.TotalStatistics;
@@ -25,25 +30,66 @@ public class StatisticsService implements StatisticsServiceInterface {
     private final PageRepository pageRepository;
     private final LemmaRepository lemmaRepository;
     private final IndexingService indexingService;
+    private final StatisticsSettings statisticsSettings;
 
+    private volatile Snapshot snapshot;
+
+    /**
+     * Снимок счетчиков, посчитанный двумя сгруппированными запросами, и момент его построения.
+     */
+    private record Snapshot(TotalStatistics total, List<DetailedStatisticsItem> detailed, long takenAt) {
+    }
+
+    /**
+     * Счетчики берутся из снимка не старше refreshInterval; признак индексации — всегда текущий.
+     */
     @Override
     public StatisticsResponse getStatistics() {
-        List<SiteEntity> allSites = siteRepository.findAll();
+        Snapshot current = currentSnapshot();
 
-        long totalPagesLong = pageRepository.count();
-        long totalLemmasLong = lemmaRepository.count();
+        TotalStatistics totalStatistics = new TotalStatistics();
+        totalStatistics.setSites(current.total().getSites());
+        totalStatistics.setPages(current.total().getPages());
+        totalStatistics.setLemmas(current.total().getLemmas());
+        totalStatistics.setIndexing(indexingService.isIndexing());
 
-        int totalPages = (totalPagesLong > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) totalPagesLong;
-        int totalLemmas = (totalLemmasLong > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) totalLemmasLong;
+        StatisticsData statisticsData = new StatisticsData();
+        statisticsData.setTotal(totalStatistics);
+        statisticsData.setDetailed(current.detailed());
 
-        TotalStatistics totalStatistics = new TotalStatistics();
-        totalStatistics.setSites(allSites.size());
-        totalStatistics.setPages(totalPages);
-        totalStatistics.setLemmas(totalLemmas);
+        StatisticsResponse response = new StatisticsResponse();
+        response.setStatistics(statisticsData);
+        response.setResult(true);
+
+        return response;
+    }
 
-        boolean isIndexing = indexingService.isIndexing();
-        totalStatistics.setIndexing(isIndexing);
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null && !isStale(current)) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current == null || isStale(current)) {
+                current = takeSnapshot();
+                snapshot = current;
+            }
+            return current;
+        }
+    }
 
+    private boolean isStale(Snapshot current) {
+        return System.nanoTime() - current.takenAt() >= statisticsSettings.getRefreshInterval().toNanos();
+    }
+
+    private Snapshot takeSnapshot() {
+        List<SiteEntity> allSites = latestGenerations(siteRepository.findAll());
+        Map<Integer, Long> pagesBySite = toMap(pageRepository.countGroupedBySite());
+        Map<Integer, Long> lemmasBySite = toMap(lemmaRepository.countGroupedBySite());
+
+        long totalPagesLong = 0;
+        long totalLemmasLong = 0;
         List<DetailedStatisticsItem> detailedStatisticsItems = new ArrayList<>();
         for (SiteEntity site : allSites) {
             DetailedStatisticsItem item = new DetailedStatisticsItem();
@@ -55,11 +101,13 @@ public class StatisticsService implements StatisticsServiceInterface {
             long epochSeconds = (statusTime != null) ? statusTime.toInstant().getEpochSecond() : 0;
             item.setStatusTime(epochSeconds);
 
-            int pages = (pageRepository.countBySite(site) > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) pageRepository.countBySite(site);
-            int lemmas = (lemmaRepository.countBySite(site) > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) lemmaRepository.countBySite(site);
+            long pages = pagesBySite.getOrDefault(site.getId(), 0L);
+            long lemmas = lemmasBySite.getOrDefault(site.getId(), 0L);
+            totalPagesLong += pages;
+            totalLemmasLong += lemmas;
 
-            item.setPages(pages);
-            item.setLemmas(lemmas);
+            item.setPages(toInt(pages));
+            item.setLemmas(toInt(lemmas));
 
             if (site.getLastError() != null) {
                 item.setError(site.getLastError());
@@ -68,14 +116,30 @@ public class StatisticsService implements StatisticsServiceInterface {
             detailedStatisticsItems.add(item);
         }
 
-        StatisticsData statisticsData = new StatisticsData();
-        statisticsData.setTotal(totalStatistics);
-        statisticsData.setDetailed(detailedStatisticsItems);
+        TotalStatistics totalStatistics = new TotalStatistics();
+        totalStatistics.setSites(allSites.size());
+        totalStatistics.setPages(toInt(totalPagesLong));
+        totalStatistics.setLemmas(toInt(totalLemmasLong));
 
-        StatisticsResponse response = new StatisticsResponse();
-        response.setStatistics(statisticsData);
-        response.setResult(true);
+        return new Snapshot(totalStatistics, List.copyOf(detailedStatisticsItems), System.nanoTime());
+    }
 
-        return response;
+    /**
+     * По одной строке на сайт: последнее поколение — строящееся во время индексации, иначе живое.
+     */
+    private static List<SiteEntity> latestGenerations(List<SiteEntity> sites) {
+        Map<String, SiteEntity> latest = new LinkedHashMap<>();
+        for (SiteEntity site : sites) {
+            latest.merge(site.getUrl(), site, (current, other) -> other.getId() > current.getId() ? other : current);
+        }
+        return new ArrayList<>(latest.values());
+    }
+
+    private static Map<Integer, Long> toMap(List<SiteCount> counts) {
+        return counts.stream().collect(Collectors.toMap(SiteCount::siteId, SiteCount::count));
+    }
+
+    private static int toInt(long value) {
+        return (value > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) value;
     }
 }
@@ -0,0 +1,12 @@
+package searchengine.services.interfaces;
+
+import searchengine.dto.indexing.CrawlProgress;
+
+import java.util.function.Consumer;
+
+public interface CrawlProgressServiceInterface {
+    /**
+     * Подписывает на прогресс индексации; возвращает действие для отписки.
+     */
+    Runnable subscribe(Consumer<CrawlProgress> listener);
+}
@@ -0,0 +1,28 @@
+package searchengine.services.interfaces;
+
+import searchengine.model.SiteEntity;
+import searchengine.util.PageBatchWriter;
+
+import java.util.List;
+
+/**
+ * Получает изменения индекса после записи в БД — для поисковых движков со своим индексом.
+ * Вызывается в потоке индексации, поэтому тяжелую работу реализация должна уносить в свой поток.
+ */
+public interface IndexUpdateListener {
+
+    /**
+     * Новое поколение сайта стало живым: содержимое сайта целиком заменилось.
+     */
+    void siteCommitted(SiteEntity site);
+
+    /**
+     * В живое поколение сайта записаны новые версии страниц.
+     */
+    void pagesWritten(SiteEntity site, List<PageBatchWriter.ParsedPage> pages);
+
+    /**
+     * Из живого поколения сайта удалены страницы, пропавшие с сайта.
+     */
+    void pagesDeleted(SiteEntity site, List<String> paths);
+}
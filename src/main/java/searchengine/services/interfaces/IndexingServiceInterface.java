@@ -1,9 +1,13 @@
 package searchengine.services.interfaces;
 
+import searchengine.dto.indexing.IndexingJobStatus;
 import searchengine.dto.indexing.IndexingResponse;
 
+import java.util.List;
+
 public interface IndexingServiceInterface {
     IndexingResponse startIndexing();
     IndexingResponse stopIndexing();
     boolean isIndexing();
+    List<IndexingJobStatus> jobs();
 }
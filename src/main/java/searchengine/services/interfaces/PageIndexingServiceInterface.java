@@ -1,7 +1,16 @@
 package searchengine.services.interfaces;
 
 import searchengine.dto.indexing.IndexingResponse;
+import searchengine.dto.indexing.PageBatchResponse;
+import searchengine.dto.indexing.PageBatchStatus;
+
+import java.util.List;
+import java.util.Optional;
 
 public interface PageIndexingServiceInterface {
     IndexingResponse indexPage(String url);
+
+    PageBatchResponse indexPages(List<String> urls);
+
+    Optional<PageBatchStatus> batchStatus(String jobId);
 }
@@ -0,0 +1,9 @@
+package searchengine.services.interfaces;
+
+import searchengine.dto.indexing.ScheduledSiteStatus;
+
+import java.util.List;
+
+public interface RefreshSchedulerServiceInterface {
+    List<ScheduledSiteStatus> schedule();
+}
@@ -1,7 +1,9 @@
 package searchengine.services.interfaces;
 
+import searchengine.dto.search.SearchRequest;
 import searchengine.dto.search.SearchResponse;
 
 public interface SearchServiceInterface {
-    SearchResponse search(String query, String site, int offset, int limit);
+    SearchResponse search(SearchRequest request);
+    void streamSearch(SearchRequest request, SearchStreamListener listener);
 }
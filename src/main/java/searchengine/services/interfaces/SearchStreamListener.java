@@ -0,0 +1,12 @@
+package searchengine.services.interfaces;
+
+import searchengine.dto.search.SearchDebug;
+import searchengine.dto.search.SearchResult;
+
+public interface SearchStreamListener {
+    void onCount(int count, String searchAfter);
+    void onResult(SearchResult result);
+
+    default void onDebug(SearchDebug debug) {
+    }
+}
@@ -2,70 +2,102 @@ package searchengine.util;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
-import searchengine.dto.search.SearchResult;
-import searchengine.model.LemmaEntity;
+import searchengine.config.CacheSettings;
+
+import java.time.Duration;
+import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-@Getter
 @Slf4j
 @Component
 public class CacheManagement {
 
-    public final Cache<String, Boolean> pageUrlCache = Caffeine.newBuilder()
-            .maximumSize(1000)
-            .expireAfterAccess(10, TimeUnit.MINUTES)
-            .build();
+    private static final int OBJECT_OVERHEAD = 16;
+    private static final int ENTRY_OVERHEAD = 64;
+
+    @Getter
+    protected final Cache<SearchCacheKey, RankedPages> searchResultsCache;
+
+    private final AtomicLong indexGeneration = new AtomicLong();
 
-    protected final Cache<String, LemmaEntity> lemmaCache = Caffeine.newBuilder()
-            .maximumSize(10000)
-            .expireAfterAccess(10, TimeUnit.MINUTES)
-            .build();
+    public CacheManagement(CacheSettings cacheSettings, MeterRegistry meterRegistry) {
+        Duration expireAfterAccess = cacheSettings.getExpireAfterAccess();
 
+        this.searchResultsCache = Caffeine.newBuilder()
+                .maximumWeight(cacheSettings.getSearchResults().toBytes())
+                .<SearchCacheKey, RankedPages>weigher((key, pages) -> ENTRY_OVERHEAD + key.estimatedBytes()
+                        + pages.estimatedBytes())
+                .expireAfterAccess(expireAfterAccess)
+                .recordStats()
+                .build();
 
-    protected final Cache<String, List<SearchResult>> allSitesSearchResultsCache = Caffeine.newBuilder()
-            .maximumSize(1000)
-            .expireAfterAccess(10, TimeUnit.MINUTES)
-            .build();
+        monitor(meterRegistry, searchResultsCache, "searchResults");
+    }
 
+    /**
+     * Ключ кэша поиска: отсортированный набор лемм, сайт (null — все сайты), признак фразы
+     * и поколение индекса, при котором ранжирование было посчитано.
+     */
+    public record SearchCacheKey(List<String> lemmas, String site, boolean phrase, long generation) {
 
-    protected final Cache<String, List<SearchResult>> singleSiteSearchResultsCache = Caffeine.newBuilder()
-            .maximumSize(1000)
-            .expireAfterAccess(10, TimeUnit.MINUTES)
-            .build();
+        int estimatedBytes() {
+            int bytes = OBJECT_OVERHEAD * 3 + (site == null ? 0 : stringBytes(site));
+            for (String lemma : lemmas) {
+                bytes += stringBytes(lemma) + 8;
+            }
+            return bytes;
+        }
+    }
 
-    /*  public void clearCache() {
-        pageUrlCache.invalidateAll();
-        lemmaCache.invalidateAll();
-        allSitesSearchResultsCache.invalidateAll();
-        singleSiteSearchResultsCache.invalidateAll();
-        log.info("Кэши очищены.");
-    }*/
+    public long getIndexGeneration() {
+        return indexGeneration.get();
+    }
 
-    public LemmaEntity getLemmaFromCache(String lemma) {
-        return lemmaCache.getIfPresent(lemma);
+    /**
+     * Вызывается при каждой записи в индекс: записи кэша прошлых поколений больше не находятся
+     * и вытесняются по времени.
+     */
+    public void bumpIndexGeneration() {
+        indexGeneration.incrementAndGet();
     }
 
-    public void putLemmaInCache(String lemma, LemmaEntity lemmaEntity) {
-        lemmaCache.put(lemma, lemmaEntity);
+    /**
+     * Для обычного запроса порядок слов не важен, поэтому леммы сортируются;
+     * для фразы ключ сохраняет порядок, переданный вызывающим.
+     */
+    public SearchCacheKey searchCacheKey(Collection<String> lemmas, String site, boolean phrase, long generation) {
+        List<String> sortedLemmas = phrase ? List.copyOf(lemmas) : lemmas.stream().sorted().distinct().toList();
+        String siteKey = (site == null || site.isEmpty()) ? null : site;
+        return new SearchCacheKey(sortedLemmas, siteKey, phrase, generation);
     }
 
-    public List<SearchResult> getAllSitesSearchResultsFromCache(String key) {
-        return allSitesSearchResultsCache.getIfPresent(key);
+    public RankedPages getSearchResultsFromCache(SearchCacheKey key) {
+        return searchResultsCache.getIfPresent(key);
     }
 
-    public void putAllSitesSearchResultsInCache(String key, List<SearchResult> searchResults) {
-        allSitesSearchResultsCache.put(key, searchResults);
+    public void putSearchResultsInCache(SearchCacheKey key, RankedPages rankedPages) {
+        searchResultsCache.put(key, rankedPages);
     }
 
-    public List<SearchResult> getSingleSiteSearchResultsFromCache(String key) {
-        return singleSiteSearchResultsCache.getIfPresent(key);
+    private static int stringBytes(String value) {
+        return OBJECT_OVERHEAD * 2 + value.length() * 2;
     }
 
-    public void putSingleSiteSearchResultsInCache(String key, List<SearchResult> searchResults) {
-        singleSiteSearchResultsCache.put(key, searchResults);
+    private static void monitor(MeterRegistry meterRegistry, Cache<?, ?> cache, String name) {
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+        Gauge.builder("cache.weight", cache, c -> c.policy().eviction()
+                        .map(eviction -> eviction.weightedSize().orElse(0L))
+                        .orElse(0L))
+                .tag("cache", name)
+                .description("Оценка объема кэша в байтах")
+                .baseUnit("bytes")
+                .register(meterRegistry);
     }
-}
\ No newline at end of file
+}
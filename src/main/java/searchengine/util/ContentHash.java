@@ -0,0 +1,24 @@
+package searchengine.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * SHA-256 содержимого страницы в hex: инкрементальная переиндексация сравнивает его вместо всего HTML.
+ */
+public final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    public static String of(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
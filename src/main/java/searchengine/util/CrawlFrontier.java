@@ -0,0 +1,280 @@
+package searchengine.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Очередь обхода одного сайта с приоритетом. Первой отдается страница с наибольшей оценкой:
+ * меньше глубина от главной, больше входящих ссылок среди уже скачанных страниц, выше priority в sitemap;
+ * при равной оценке — обнаруженная раньше, то есть обход в ширину. Каждый URL отдается не больше одного раза.
+ * <p>
+ * Бюджет maxPages ограничивает число выданных страниц, maxDepth — глубину, на которой ссылки еще
+ * попадают в очередь (0 — без ограничения). Очередь общая для всех обработчиков сайта: {@link #poll} ждет,
+ * пока другие обработчики могут добавить ссылки, и возвращает null, когда обход закончен.
+ */
+public class CrawlFrontier {
+
+    /**
+     * Priority страницы, которой нет в sitemap (значение по умолчанию из протокола sitemaps.org).
+     */
+    public static final double DEFAULT_PRIORITY = 0.5;
+
+    private static final double DEPTH_WEIGHT = 1.0;
+    private static final double LINK_WEIGHT = 0.5;
+    private static final double SITEMAP_WEIGHT = 2.0;
+    private static final long WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int maxPages;
+    private final int maxDepth;
+    private final AtomicInteger sizeGauge;
+
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private int queued;
+    private int inFlight;
+    private int taken;
+    private long sequence;
+    private boolean closed;
+
+    /**
+     * Страница, выданная обработчику.
+     */
+    public record Candidate(String url, int depth) {
+    }
+
+    private static final class Node {
+        private final String url;
+        private final long discovered;
+        private int depth;
+        private int inbound;
+        private double priority;
+        private boolean queued;
+        private int version;
+
+        private Node(String url, int depth, double priority, long discovered) {
+            this.url = url;
+            this.depth = depth;
+            this.priority = priority;
+            this.discovered = discovered;
+        }
+
+        private double score() {
+            return priority * SITEMAP_WEIGHT + Math.log1p(inbound) * LINK_WEIGHT - depth * DEPTH_WEIGHT;
+        }
+    }
+
+    /**
+     * Снимок оценки узла. Меняется оценка — в очередь кладется новый снимок, старый пропускается при выборке.
+     */
+    private record Entry(Node node, double score, int version) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int byScore = Double.compare(other.score, score);
+            return byScore != 0 ? byScore : Long.compare(node.discovered, other.node.discovered);
+        }
+    }
+
+    /**
+     * @param maxPages  сколько страниц выдать за обход, 0 — без ограничения
+     * @param maxDepth  наибольшая глубина страницы в очереди, 0 — без ограничения
+     * @param sizeGauge счетчик для метрики crawler.frontier
+     */
+    public CrawlFrontier(int maxPages, int maxDepth, AtomicInteger sizeGauge) {
+        this.maxPages = maxPages;
+        this.maxDepth = maxDepth;
+        this.sizeGauge = sizeGauge;
+    }
+
+    /**
+     * Добавляет ссылку. Для уже известного URL засчитывается входящая ссылка, а ожидающая в очереди
+     * страница получает новую оценку.
+     *
+     * @param priority priority из sitemap или {@link #DEFAULT_PRIORITY}
+     * @return true, если URL встречен впервые и поставлен в очередь
+     */
+    public boolean offer(String url, int depth, double priority) {
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            Node node = nodes.get(url);
+            if (node != null) {
+                node.inbound++;
+                node.depth = Math.min(node.depth, depth);
+                node.priority = Math.max(node.priority, priority);
+                if (node.queued) {
+                    push(node);
+                }
+                return false;
+            }
+            if (maxDepth > 0 && depth > maxDepth) {
+                return false;
+            }
+            node = new Node(url, depth, priority, sequence++);
+            node.queued = true;
+            nodes.put(url, node);
+            queued++;
+            push(node);
+            sizeGauge.set(queued);
+            changed.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Выдает следующую страницу. Пока очередь пуста, но другие обработчики еще не закончили свои страницы,
+     * ждет (через ForkJoinPool.managedBlock). После обработки страницы вызывающий обязан вызвать {@link #done()}.
+     *
+     * @param stop проверка отмены обхода
+     * @return страница или null, если обход закончен, исчерпан бюджет или обход отменен
+     */
+    public Candidate poll(BooleanSupplier stop) throws InterruptedException {
+        Candidate[] result = new Candidate[1];
+        ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+            private boolean finished;
+
+            @Override
+            public boolean block() throws InterruptedException {
+                lock.lock();
+                try {
+                    while (!finished && !tryTake(stop)) {
+                        changed.awaitNanos(WAIT_NANOS);
+                    }
+                    finished = true;
+                } finally {
+                    lock.unlock();
+                }
+                return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+                lock.lock();
+                try {
+                    if (!finished && tryTake(stop)) {
+                        finished = true;
+                    }
+                    return finished;
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            /**
+             * Вызывается под lock: true, если страница выдана или ждать больше нечего.
+             */
+            private boolean tryTake(BooleanSupplier stop) {
+                if (closed || stop.getAsBoolean() || (maxPages > 0 && taken >= maxPages)) {
+                    close();
+                    return true;
+                }
+                Entry entry;
+                while ((entry = queue.poll()) != null) {
+                    Node node = entry.node();
+                    if (node.queued && node.version == entry.version()) {
+                        node.queued = false;
+                        queued--;
+                        taken++;
+                        inFlight++;
+                        sizeGauge.set(queued);
+                        result[0] = new Candidate(node.url, node.depth);
+                        return true;
+                    }
+                }
+                if (inFlight == 0) {
+                    close();
+                    return true;
+                }
+                return false;
+            }
+        });
+        return result[0];
+    }
+
+    /**
+     * Обработка выданной страницы закончена, включая добавление найденных на ней ссылок.
+     */
+    public void done() {
+        lock.lock();
+        try {
+            inFlight--;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Останавливает выдачу: ожидающие обработчики получают null.
+     */
+    public void abort() {
+        lock.lock();
+        try {
+            close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Глубина страницы, известной только из sitemap: число сегментов пути относительно адреса сайта.
+     */
+    public static int pathDepth(String siteUrl, String url) {
+        String path = url.substring(Math.min(siteUrl.length(), url.length()));
+        int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        int depth = 0;
+        for (String segment : path.split("/")) {
+            if (!segment.isEmpty()) {
+                depth++;
+            }
+        }
+        return Math.max(depth, 1);
+    }
+
+    public int taken() {
+        lock.lock();
+        try {
+            return taken;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void close() {
+        if (!closed) {
+            closed = true;
+            queue.clear();
+            queued = 0;
+            sizeGauge.set(0);
+        }
+        changed.signalAll();
+    }
+
+    /**
+     * Устаревшие снимки копятся при частых перерасчетах; когда их становится заметно больше живых,
+     * очередь пересобирается.
+     */
+    private void push(Node node) {
+        node.version++;
+        queue.add(new Entry(node, node.score(), node.version));
+        if (queue.size() > 64 && queue.size() > queued * 4) {
+            queue.removeIf(entry -> !entry.node().queued || entry.node().version != entry.version());
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package searchengine.util;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CacheSettings;
+import searchengine.model.LemmaEntity;
+import searchengine.model.SiteEntity;
+import searchengine.repositories.LemmaRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Кэш лемм обходчика: для каждого строящегося сайта — id леммы и еще не записанный прирост частоты,
+ * без управляемых сущностей. Общий объем ограничен cache-settings.crawl-lemmas и делится поровну между
+ * сайтами, которые сейчас индексируются. Сайт, вышедший за свою долю, сбрасывает приросты в БД
+ * и вытесняет давно не встречавшиеся леммы; вытесненная лемма при следующей встрече снова читается из БД.
+ */
+@Slf4j
+@Component
+public class CrawlLemmaCache {
+
+    /**
+     * Узел LinkedHashMap, Slot и заголовок строки.
+     */
+    private static final int ENTRY_OVERHEAD = 136;
+    private static final int UPDATE_CHUNK = 1000;
+
+    private final LemmaRepository lemmaRepository;
+    private final CrawlerMetrics crawlerMetrics;
+    private final long maxBytes;
+
+    private final ConcurrentMap<Integer, SiteLemmas> sites = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    public CrawlLemmaCache(LemmaRepository lemmaRepository, CrawlerMetrics crawlerMetrics,
+                           CacheSettings cacheSettings, MeterRegistry meterRegistry) {
+        this.lemmaRepository = lemmaRepository;
+        this.crawlerMetrics = crawlerMetrics;
+        this.maxBytes = cacheSettings.getCrawlLemmas().toBytes();
+        Gauge.builder("crawler.lemma.cache.bytes", totalBytes, AtomicLong::get)
+                .description("Оценка объема кэша лемм обходчика")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Лемма сайта: id строки lemma и прирост частоты, еще не записанный в нее.
+     */
+    private static final class Slot {
+        private final long id;
+        private int pending;
+
+        private Slot(long id, int pending) {
+            this.id = id;
+            this.pending = pending;
+        }
+    }
+
+    private static final class SiteLemmas {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final LinkedHashMap<String, Slot> slots = new LinkedHashMap<>(1024, 0.75f, true);
+        private long bytes;
+    }
+
+    /**
+     * Учитывает частоты лемм страницы: известным леммам добавляет прирост, новые создает в БД сразу
+     * с частотой страницы. Леммы одного сайта обрабатываются по очереди — у lemma нет уникального
+     * ключа (lemma, site_id), и параллельная вставка дала бы дубликаты.
+     *
+     * @param counts лемма → прирост частоты: 1 для каждой леммы страницы, -1 при откате
+     * @return лемма → id строки lemma
+     */
+    public Map<String, Long> apply(SiteEntity site, Map<String, Integer> counts) {
+        SiteLemmas lemmas = sites.computeIfAbsent(site.getId(), id -> new SiteLemmas());
+        Map<String, Long> ids = new HashMap<>(counts.size() * 2);
+        lemmas.lock.lock();
+        try {
+            List<String> missing = new ArrayList<>();
+            counts.forEach((lemma, count) -> {
+                Slot slot = lemmas.slots.get(lemma);
+                if (slot == null) {
+                    missing.add(lemma);
+                    return;
+                }
+                slot.pending += count;
+                ids.put(lemma, slot.id);
+            });
+            if (!missing.isEmpty()) {
+                load(site, lemmas, missing, counts, ids);
+            }
+            if (lemmas.bytes > share()) {
+                spill(site, lemmas);
+            }
+        } finally {
+            lemmas.lock.unlock();
+        }
+        return ids;
+    }
+
+    /**
+     * Записывает накопленные приросты частот сайта.
+     */
+    public void flush(SiteEntity site) {
+        SiteLemmas lemmas = sites.get(site.getId());
+        if (lemmas == null) {
+            return;
+        }
+        lemmas.lock.lock();
+        try {
+            writePending(lemmas);
+        } finally {
+            lemmas.lock.unlock();
+        }
+    }
+
+    /**
+     * Освобождает память сайта; незаписанные приросты теряются, поэтому перед фиксацией поколения
+     * нужен {@link #flush}.
+     */
+    public void release(SiteEntity site) {
+        SiteLemmas lemmas = sites.remove(site.getId());
+        if (lemmas == null) {
+            return;
+        }
+        lemmas.lock.lock();
+        try {
+            totalBytes.addAndGet(-lemmas.bytes);
+            lemmas.slots.clear();
+            lemmas.bytes = 0;
+        } finally {
+            lemmas.lock.unlock();
+        }
+    }
+
+    private void load(SiteEntity site, SiteLemmas lemmas, List<String> missing, Map<String, Integer> counts,
+                      Map<String, Long> ids) {
+        for (LemmaEntity lemma : lemmaRepository.findBySiteAndLemmaIn(site, missing)) {
+            if (!ids.containsKey(lemma.getLemma())) {
+                put(lemmas, lemma.getLemma(), new Slot(lemma.getId(), counts.get(lemma.getLemma())));
+                ids.put(lemma.getLemma(), lemma.getId());
+            }
+        }
+
+        List<LemmaEntity> created = new ArrayList<>();
+        for (String text : missing) {
+            if (!ids.containsKey(text)) {
+                created.add(new LemmaEntity(null, site, text, counts.get(text)));
+            }
+        }
+        if (created.isEmpty()) {
+            return;
+        }
+        crawlerMetrics.timeWrite("lemma", created.size(), () -> lemmaRepository.saveAll(created));
+        for (LemmaEntity lemma : created) {
+            put(lemmas, lemma.getLemma(), new Slot(lemma.getId(), 0));
+            ids.put(lemma.getLemma(), lemma.getId());
+        }
+    }
+
+    private void put(SiteLemmas lemmas, String lemma, Slot slot) {
+        long bytes = weight(lemma);
+        lemmas.slots.put(lemma, slot);
+        lemmas.bytes += bytes;
+        totalBytes.addAndGet(bytes);
+    }
+
+    /**
+     * Сбрасывает приросты и вытесняет самые давние леммы, пока сайт не займет три четверти своей доли.
+     */
+    private void spill(SiteEntity site, SiteLemmas lemmas) {
+        writePending(lemmas);
+        long target = share() * 3 / 4;
+        int evicted = 0;
+        Iterator<Map.Entry<String, Slot>> iterator = lemmas.slots.entrySet().iterator();
+        while (lemmas.bytes > target && iterator.hasNext()) {
+            long bytes = weight(iterator.next().getKey());
+            iterator.remove();
+            lemmas.bytes -= bytes;
+            totalBytes.addAndGet(-bytes);
+            evicted++;
+        }
+        log.debug("Кэш лемм сайта {}: вытеснено {}, осталось {}", site.getUrl(), evicted, lemmas.slots.size());
+    }
+
+    /**
+     * Одинаковые приросты пишутся одним UPDATE: у большинства лемм прирост маленький (1–3),
+     * так что запросов выходит немного.
+     */
+    private void writePending(SiteLemmas lemmas) {
+        Map<Integer, List<Long>> idsByDelta = new HashMap<>();
+        for (Slot slot : lemmas.slots.values()) {
+            if (slot.pending != 0) {
+                idsByDelta.computeIfAbsent(slot.pending, delta -> new ArrayList<>()).add(slot.id);
+                slot.pending = 0;
+            }
+        }
+        if (idsByDelta.isEmpty()) {
+            return;
+        }
+        int changed = idsByDelta.values().stream().mapToInt(List::size).sum();
+        crawlerMetrics.timeWrite("lemma", changed, () -> {
+            idsByDelta.forEach((delta, ids) -> {
+                for (int from = 0; from < ids.size(); from += UPDATE_CHUNK) {
+                    int to = Math.min(from + UPDATE_CHUNK, ids.size());
+                    lemmaRepository.incrementFrequency(delta, ids.subList(from, to));
+                }
+            });
+            return changed;
+        });
+    }
+
+    private long share() {
+        return maxBytes / Math.max(sites.size(), 1);
+    }
+
+    private static long weight(String lemma) {
+        return ENTRY_OVERHEAD + lemma.length() * 2L;
+    }
+}
@@ -0,0 +1,134 @@
+package searchengine.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Метрики обходчика: скачивание страниц, лемматизация, запись в БД и размер очереди обхода по сайтам.
+ * Помимо Micrometer ведет счетчики прогресса по сайтам в памяти — их читает поток прогресса индексации.
+ */
+@Component
+public class CrawlerMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, SiteCounters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Счетчики текущего обхода сайта; сбрасываются при запуске индексации.
+     */
+    @Getter
+    public static final class SiteCounters {
+        private final LongAdder fetched = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder indexed = new LongAdder();
+        private final AtomicInteger frontier = new AtomicInteger();
+        private final AtomicInteger pendingWrites = new AtomicInteger();
+    }
+
+    public CrawlerMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void recordFetch(String site, String status, long nanos) {
+        SiteCounters siteCounters = counters(site);
+        siteCounters.fetched.increment();
+        if (!status.startsWith("2") && !status.startsWith("3")) {
+            siteCounters.failed.increment();
+        }
+        Timer.builder("crawler.fetch")
+                .description("Время скачивания страницы")
+                .tag("site", site)
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void pageIndexed(String site) {
+        counters(site).indexed.increment();
+        Counter.builder("crawler.pages")
+                .description("Проиндексированные страницы")
+                .tag("site", site)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public <T> T timeLemmatization(String site, Supplier<T> action) {
+        return Timer.builder("crawler.lemmatization")
+                .description("Лемматизация страницы")
+                .tag("site", site)
+                .register(meterRegistry)
+                .record(action);
+    }
+
+    public <T> T timeWrite(String entity, int batchSize, Supplier<T> action) {
+        DistributionSummary.builder("crawler.db.batch.size")
+                .tag("entity", entity)
+                .register(meterRegistry)
+                .record(batchSize);
+        return Timer.builder("crawler.db.write")
+                .description("Запись пакета в БД")
+                .tag("entity", entity)
+                .register(meterRegistry)
+                .record(action);
+    }
+
+    public void recordJob(String site, String kind, String state, long nanos) {
+        Timer.builder("crawler.job")
+                .description("Длительность задачи индексации сайта")
+                .tag("site", site)
+                .tag("kind", kind)
+                .tag("state", state)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public AtomicInteger frontier(String site) {
+        return counters(site).frontier;
+    }
+
+    /**
+     * Страницы, скачанные и ожидающие окончания записи в БД.
+     */
+    public AtomicInteger pendingWrites(String site) {
+        return counters(site).pendingWrites;
+    }
+
+    public void resetProgress(String site) {
+        SiteCounters siteCounters = counters(site);
+        siteCounters.fetched.reset();
+        siteCounters.failed.reset();
+        siteCounters.indexed.reset();
+        siteCounters.frontier.set(0);
+        siteCounters.pendingWrites.set(0);
+    }
+
+    public Map<String, SiteCounters> progress() {
+        return Collections.unmodifiableMap(counters);
+    }
+
+    private SiteCounters counters(String site) {
+        return counters.computeIfAbsent(site, key -> {
+            SiteCounters siteCounters = new SiteCounters();
+            Gauge.builder("crawler.frontier", siteCounters.frontier, AtomicInteger::get)
+                    .description("Страницы, ожидающие обхода")
+                    .tag("site", key)
+                    .register(meterRegistry);
+            return siteCounters;
+        });
+    }
+}
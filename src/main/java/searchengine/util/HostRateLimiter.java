@@ -0,0 +1,249 @@
+package searchengine.util;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Адаптивное ограничение числа одновременных запросов к хосту (AIMD). Пока задержка ответа держится
+ * около базовой, лимит растет примерно на единицу за «окно» из limit ответов; при росте задержки лимит
+ * умножается на decreaseFactor, при 429/503 и таймаутах — вдвое, а хост до конца Retry-After
+ * (или короткой паузы без него) не получает новых запросов. Таймаут запроса тоже подстраивается
+ * под базовую задержку хоста.
+ * <p>
+ * Ожидание разрешения идет через ForkJoinPool.managedBlock, чтобы пул обходчика мог компенсировать
+ * заблокированные потоки.
+ */
+@Slf4j
+@Component
+public class HostRateLimiter {
+
+    private static final double FAST_ALPHA = 0.3;
+    private static final double SLOW_ALPHA = 0.05;
+    private static final Duration DEFAULT_BACKOFF = Duration.ofSeconds(1);
+
+    private final CrawlerSettings settings;
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, HostState> hosts = new ConcurrentHashMap<>();
+
+    public HostRateLimiter(CrawlerSettings settings, MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Результат запроса для подстройки лимита.
+     */
+    public enum Outcome {
+        OK,
+        THROTTLED,
+        TIMEOUT,
+        ERROR
+    }
+
+    /**
+     * Разрешение на один запрос к хосту; возвращается через {@link #release}.
+     */
+    public record Permit(String host, long startedAt) {
+    }
+
+    public Permit acquire(String url) throws InterruptedException {
+        HostState state = state(host(url));
+        ForkJoinPool.managedBlock(state.blocker());
+        return new Permit(state.host, System.nanoTime());
+    }
+
+    /**
+     * @param retryAfter значение заголовка Retry-After или null
+     */
+    public void release(Permit permit, Outcome outcome, String retryAfter) {
+        HostState state = hosts.get(permit.host());
+        state.complete(outcome, (System.nanoTime() - permit.startedAt()) / 1e6, parseRetryAfter(retryAfter));
+    }
+
+    /**
+     * Таймаут запроса к хосту: кратный базовой задержке, в пределах [minTimeout, maxTimeout].
+     */
+    public int timeoutMillis(String url) {
+        HostState state = hosts.get(host(url));
+        double baseline = state == null ? 0 : state.slowLatency;
+        if (baseline <= 0) {
+            return (int) settings.getMaxTimeout().toMillis();
+        }
+        long timeout = (long) (baseline * settings.getTimeoutFactor());
+        return (int) Math.max(settings.getMinTimeout().toMillis(), Math.min(timeout, settings.getMaxTimeout().toMillis()));
+    }
+
+    public int maxRetries() {
+        return settings.getMaxRetries();
+    }
+
+    public double limit(String url) {
+        HostState state = hosts.get(host(url));
+        return state == null ? settings.getInitialConcurrency() : state.limit;
+    }
+
+    private HostState state(String host) {
+        return hosts.computeIfAbsent(host, key -> {
+            HostState state = new HostState(key);
+            Gauge.builder("crawler.host.concurrency", state, s -> s.limit)
+                    .description("Текущий лимит одновременных запросов к хосту")
+                    .tag("host", key)
+                    .register(meterRegistry);
+            return state;
+        });
+    }
+
+    private Duration parseRetryAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        Duration delay;
+        try {
+            delay = Duration.ofSeconds(Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                delay = Duration.between(ZonedDateTime.now(at.getZone()), at);
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+        if (delay.isNegative()) {
+            return Duration.ZERO;
+        }
+        return delay.compareTo(settings.getMaxRetryAfter()) > 0 ? settings.getMaxRetryAfter() : delay;
+    }
+
+    private static String host(String url) {
+        String host = URI.create(url).getHost();
+        return host == null ? url : host.toLowerCase(Locale.ROOT);
+    }
+
+    private final class HostState {
+        private final String host;
+        private volatile double limit = settings.getInitialConcurrency();
+        private int inFlight;
+        private long blockedUntil;
+        private double fastLatency;
+        private volatile double slowLatency;
+        private long lastDecrease;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition released = lock.newCondition();
+
+        private HostState(String host) {
+            this.host = host;
+            long now = System.nanoTime();
+            this.blockedUntil = now;
+            this.lastDecrease = now - Duration.ofHours(1).toNanos();
+        }
+
+        private ForkJoinPool.ManagedBlocker blocker() {
+            return new ForkJoinPool.ManagedBlocker() {
+                private boolean acquired;
+
+                @Override
+                public boolean block() throws InterruptedException {
+                    lock.lock();
+                    try {
+                        while (!acquired && !tryTake()) {
+                            long wait = Math.max(1_000_000, blockedUntil - System.nanoTime());
+                            released.awaitNanos(Math.min(wait, 1_000_000_000L));
+                        }
+                        acquired = true;
+                    } finally {
+                        lock.unlock();
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    lock.lock();
+                    try {
+                        if (!acquired && tryTake()) {
+                            acquired = true;
+                        }
+                        return acquired;
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Вызывается под lock. Используется ReentrantLock, а не synchronized, чтобы ожидание
+         * в виртуальных потоках не занимало поток-носитель.
+         */
+        private boolean tryTake() {
+            if (System.nanoTime() - blockedUntil < 0 || inFlight >= (int) Math.floor(limit)) {
+                return false;
+            }
+            inFlight++;
+            return true;
+        }
+
+        private void complete(Outcome outcome, double latencyMs, Duration retryAfter) {
+            lock.lock();
+            try {
+                update(outcome, latencyMs, retryAfter);
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void update(Outcome outcome, double latencyMs, Duration retryAfter) {
+            inFlight--;
+            long now = System.nanoTime();
+            switch (outcome) {
+                case OK -> {
+                    fastLatency = fastLatency == 0 ? latencyMs : fastLatency + FAST_ALPHA * (latencyMs - fastLatency);
+                    slowLatency = slowLatency == 0 ? latencyMs : slowLatency + SLOW_ALPHA * (latencyMs - slowLatency);
+                    if (fastLatency > slowLatency * settings.getLatencyTolerance()) {
+                        decrease(now, settings.getDecreaseFactor());
+                    } else {
+                        limit = Math.min(settings.getMaxConcurrency(), limit + 1.0 / Math.max(limit, 1));
+                    }
+                }
+                case THROTTLED, TIMEOUT -> {
+                    decrease(now, 0.5);
+                    Duration pause = retryAfter != null ? retryAfter : DEFAULT_BACKOFF;
+                    if (now + pause.toNanos() - blockedUntil > 0) {
+                        blockedUntil = now + pause.toNanos();
+                    }
+                    log.info("Хост {} замедлен ({}): лимит {}, пауза {} мс", host, outcome,
+                            String.format(Locale.ROOT, "%.1f", limit), pause.toMillis());
+                }
+                case ERROR -> {
+                }
+            }
+        }
+
+        /**
+         * Не чаще одного снижения за время базовой задержки: ответы, начатые до снижения, уже не показательны.
+         */
+        private void decrease(long now, double factor) {
+            if (now - lastDecrease < (long) (slowLatency * 1_000_000)) {
+                return;
+            }
+            lastDecrease = now;
+            limit = Math.max(1, limit * factor);
+        }
+    }
+}
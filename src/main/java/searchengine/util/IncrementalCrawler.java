@@ -0,0 +1,185 @@
+package searchengine.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.springframework.stereotype.Component;
+import searchengine.config.PageIndexingSettings;
+import searchengine.config.UserConfig;
+import searchengine.model.SiteEntity;
+import searchengine.repositories.PageRepository;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Инкрементальный обход живого поколения сайта: от главной страницы по {@link CrawlFrontier}, не больше
+ * maxPages страниц за запуск, так что при урезанном бюджете первыми обновляются неглубокие и популярные страницы. Страницы, хэш содержимого которых совпадает
+ * с сохраненным в page.content_hash, не переиндексируются; измененные и новые пишутся пачками через
+ * PageBatchWriter прямо в живое поколение, а ответившие 404 или 410 удаляются из него. Если полная
+ * индексация тем временем сделала живым новое поколение, запись отклоняется и запуск отменяется.
+ */
+@Slf4j
+@Component
+public class IncrementalCrawler {
+
+    private static final String REPLACED = "Поколение сайта заменено полной индексацией";
+
+    private final PageRepository pageRepository;
+    private final LemmaFinder lemmaFinder;
+    private final UserConfig userConfig;
+    private final PageBatchWriter pageBatchWriter;
+    private final PageIndexingSettings pageIndexingSettings;
+    private final CrawlerMetrics crawlerMetrics;
+    private final HostRateLimiter hostRateLimiter;
+
+    public IncrementalCrawler(PageRepository pageRepository, LemmaFinder lemmaFinder, UserConfig userConfig,
+                              PageBatchWriter pageBatchWriter, PageIndexingSettings pageIndexingSettings,
+                              CrawlerMetrics crawlerMetrics, HostRateLimiter hostRateLimiter) {
+        this.pageRepository = pageRepository;
+        this.lemmaFinder = lemmaFinder;
+        this.userConfig = userConfig;
+        this.pageBatchWriter = pageBatchWriter;
+        this.pageIndexingSettings = pageIndexingSettings;
+        this.crawlerMetrics = crawlerMetrics;
+        this.hostRateLimiter = hostRateLimiter;
+    }
+
+    /**
+     * Итог запуска: скачано страниц, из них изменившихся (переиндексированы), пропавших с сайта (удалены)
+     * и с ошибкой.
+     */
+    public record Result(int fetched, int changed, int removed, int failed) {
+    }
+
+    /**
+     * Ответ сайта: код и документ, если страницу есть что индексировать.
+     */
+    private record Fetched(int status, Document doc) {
+
+        boolean gone() {
+            return status == 404 || status == 410;
+        }
+    }
+
+    public Result crawl(SiteEntity site, int maxPages, int maxDepth, IndexingJob job) {
+        CrawlFrontier frontier = new CrawlFrontier(maxPages, maxDepth, new AtomicInteger());
+        frontier.offer(site.getUrl(), 0, 1.0);
+
+        List<PageBatchWriter.ParsedPage> batch = new ArrayList<>();
+        List<String> gone = new ArrayList<>();
+        int fetched = 0;
+        int changed = 0;
+        int failed = 0;
+        CrawlFrontier.Candidate candidate;
+        while ((candidate = next(frontier, job)) != null) {
+            String url = candidate.url();
+            fetched++;
+            String path = url.replace(site.getUrl(), "");
+            Fetched response = fetch(site, url);
+            if (response != null && response.gone()) {
+                gone.add(path);
+                frontier.done();
+                continue;
+            }
+            if (response == null || response.doc() == null) {
+                failed++;
+                frontier.done();
+                continue;
+            }
+            Document doc = response.doc();
+
+            for (Element link : doc.select("a[href]")) {
+                String childUrl = link.absUrl("href");
+                if (isValidUrl(site, childUrl)) {
+                    frontier.offer(childUrl, candidate.depth() + 1, CrawlFrontier.DEFAULT_PRIORITY);
+                }
+            }
+            frontier.done();
+
+            String content = doc.outerHtml();
+            String stored = pageRepository.findContentHashBySiteAndPath(site, path).orElse(null);
+            if (!Objects.equals(stored, ContentHash.of(content))) {
+                List<LemmaFinder.WordToken> tokens = lemmaFinder.tokenize(lemmaFinder.cleanHtml(content));
+                batch.add(new PageBatchWriter.ParsedPage(path, response.status(), content,
+                        tokens, lemmaFinder.groupPositions(tokens)));
+                changed++;
+                job.pageIndexed();
+            }
+            if (batch.size() >= pageIndexingSettings.getWriteBatchSize()) {
+                if (!pageBatchWriter.write(site, batch)) {
+                    job.cancel(REPLACED);
+                    return new Result(fetched, changed, 0, failed);
+                }
+                batch = new ArrayList<>();
+            }
+        }
+        if (!pageBatchWriter.write(site, batch) || !pageBatchWriter.delete(site, gone)) {
+            job.cancel(REPLACED);
+            return new Result(fetched, changed, 0, failed);
+        }
+        return new Result(fetched, changed, gone.size(), failed);
+    }
+
+    private static CrawlFrontier.Candidate next(CrawlFrontier frontier, IndexingJob job) {
+        try {
+            return frontier.poll(job::isCancelled);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private Fetched fetch(SiteEntity site, String url) {
+        HostRateLimiter.Permit permit;
+        try {
+            permit = hostRateLimiter.acquire(url);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        long start = System.nanoTime();
+        String status = "error";
+        HostRateLimiter.Outcome outcome = HostRateLimiter.Outcome.ERROR;
+        String retryAfter = null;
+        try {
+            Connection.Response response = Jsoup.connect(url)
+                    .userAgent(userConfig.getAgent())
+                    .referrer(userConfig.getReferer())
+                    .timeout(hostRateLimiter.timeoutMillis(url))
+                    .ignoreHttpErrors(true)
+                    .execute();
+            status = String.valueOf(response.statusCode());
+            if (response.statusCode() == 429 || response.statusCode() == 503) {
+                outcome = HostRateLimiter.Outcome.THROTTLED;
+                retryAfter = response.header("Retry-After");
+                return null;
+            }
+            outcome = HostRateLimiter.Outcome.OK;
+            if (response.statusCode() >= 400) {
+                return new Fetched(response.statusCode(), null);
+            }
+            return new Fetched(response.statusCode(), response.parse());
+        } catch (SocketTimeoutException e) {
+            outcome = HostRateLimiter.Outcome.TIMEOUT;
+            log.warn("Таймаут при скачивании страницы {}", url);
+            return null;
+        } catch (IOException e) {
+            log.warn("Не удалось скачать страницу {}: {}", url, e.getMessage());
+            return null;
+        } finally {
+            hostRateLimiter.release(permit, outcome, retryAfter);
+            crawlerMetrics.recordFetch(site.getUrl(), status, System.nanoTime() - start);
+        }
+    }
+
+    private static boolean isValidUrl(SiteEntity site, String url) {
+        return url.startsWith(site.getUrl()) && !url.contains("#") && !url.matches(".*\\.(pdf|jpg|png|zip)$");
+    }
+}
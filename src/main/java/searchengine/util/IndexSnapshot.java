@@ -0,0 +1,591 @@
+package searchengine.util;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.dto.search.IndexPosting;
+import searchengine.model.SiteEntity;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.services.interfaces.IndexUpdateListener;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Снимок индекса в файле: словарь лемм и списки вхождений живых поколений сайтов, чтобы JPA-поиск
+ * ранжировал страницы без запросов к index_link. Файл отображается в память (FileChannel.map), поэтому
+ * загрузка при старте — это проверка заголовка, а данные по мере запросов подтягивает страничный кэш ОС.
+ * <p>
+ * После каждого изменения индекса снимок пишется заново — с задержкой snapshot-delay, чтобы пачки
+ * инкрементальной индексации собирались в одну запись; до этого поиск идет по БД. При старте снимок
+ * отбрасывается и строится из БД, если его нет, у него другая версия формата или не совпадает отпечаток БД
+ * (id живых поколений, их счетчики записей index_version, число и наибольшие id страниц и лемм). Быстрый
+ * старт возможен, только пока БД переживает перезапуск (spring.jpa.hibernate.ddl-auto: update или validate).
+ * <p>
+ * Формат (big-endian): заголовок на 64 байта; записи вхождений {pageId, lemmaId, ranking, длина и байты
+ * позиций}; для каждой леммы — пары {pageId, смещение записи}, сгруппированные по сайтам и отсортированные
+ * по pageId внутри группы; словарь {длина, UTF-8 леммы, число вхождений, смещение пар, число групп,
+ * группы {siteId, начало, длина}}; индекс словаря — смещения статей в порядке байтов лемм; таблица сайтов.
+ * Смещения 32-битные, поэтому снимок ограничен 2 ГБ.
+ */
+@Slf4j
+@Component
+public class IndexSnapshot implements IndexUpdateListener {
+
+    private static final long MAGIC = 0x534E415053484F54L;
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_HEADER = 20;
+    private static final int PAGE_CHUNK = 500;
+
+    private final SearchSettings settings;
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final IndexRepository indexRepository;
+    private final boolean enabled;
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Номер изменения индекса и опубликованный снимок меняются под монитором объекта: снимок, построенный
+     * до изменения, не должен стать текущим после сброса.
+     */
+    private long changes;
+    private volatile Segment segment;
+    private ScheduledFuture<?> pendingRebuild;
+
+    public IndexSnapshot(SearchSettings settings, SiteRepository siteRepository, PageRepository pageRepository,
+                         LemmaRepository lemmaRepository, IndexRepository indexRepository) {
+        this.settings = settings;
+        this.siteRepository = siteRepository;
+        this.pageRepository = pageRepository;
+        this.lemmaRepository = lemmaRepository;
+        this.indexRepository = indexRepository;
+        this.enabled = settings.isSnapshotEnabled() && "jpa".equals(settings.getEngine());
+        this.executor = enabled ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "index-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Снимок загружается или строится, когда приложение уже готово: к этому времени незавершенные
+     * поколения удалены, а БД не меняется конструкторами других компонентов.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (enabled) {
+            executor.execute(this::loadOrRebuild);
+        }
+    }
+
+    /**
+     * Актуальный снимок или null, если его нет или индекс изменился после записи.
+     */
+    public Segment current() {
+        return segment;
+    }
+
+    @Override
+    public void siteCommitted(SiteEntity site) {
+        invalidate();
+    }
+
+    @Override
+    public void pagesWritten(SiteEntity site, List<PageBatchWriter.ParsedPage> pages) {
+        invalidate();
+    }
+
+    @Override
+    public void pagesDeleted(SiteEntity site, List<String> paths) {
+        invalidate();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private synchronized void invalidate() {
+        if (!enabled) {
+            return;
+        }
+        changes++;
+        segment = null;
+        if (pendingRebuild != null) {
+            pendingRebuild.cancel(false);
+        }
+        pendingRebuild = executor.schedule(this::rebuild, settings.getSnapshotDelay().toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized long changes() {
+        return changes;
+    }
+
+    private synchronized void publish(Segment written, long version) {
+        if (changes == version) {
+            segment = written;
+        }
+    }
+
+    private void loadOrRebuild() {
+        long version = changes();
+        Path path = settings.getSnapshotPath();
+        long start = System.nanoTime();
+        try {
+            if (Files.exists(path)) {
+                Segment loaded = Segment.open(path);
+                if (loaded.fingerprint == fingerprint()) {
+                    publish(loaded, version);
+                    log.info("Снимок индекса {} загружен за {} мс: {} лемм, {} байт", path,
+                            (System.nanoTime() - start) / 1_000_000, loaded.lemmaCount, loaded.sizeBytes());
+                    return;
+                }
+                log.info("Снимок индекса {} устарел, строится заново из БД", path);
+            } else {
+                log.info("Снимка индекса {} нет, строится из БД", path);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Снимок индекса {} не прочитан ({}), строится заново из БД", path, e.getMessage());
+        }
+        rebuild();
+    }
+
+    private void rebuild() {
+        long version = changes();
+        long start = System.nanoTime();
+        Path path = settings.getSnapshotPath();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            write(tmp, fingerprint());
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Segment written = Segment.open(path);
+            publish(written, version);
+            log.info("Снимок индекса записан за {} мс: {} лемм, {} байт",
+                    (System.nanoTime() - start) / 1_000_000, written.lemmaCount, written.sizeBytes());
+        } catch (IOException | RuntimeException e) {
+            log.error("Не удалось записать снимок индекса {}", path, e);
+        }
+    }
+
+    /**
+     * Отпечаток живых поколений: меняется при переключении поколения и при каждой записи пачки страниц,
+     * в том числе если приложение остановилось раньше, чем снимок успели переписать.
+     */
+    private long fingerprint() {
+        List<SiteEntity> sites = new ArrayList<>(siteRepository.findByLiveTrue());
+        sites.sort(Comparator.comparingInt(SiteEntity::getId));
+        long hash = FORMAT_VERSION;
+        for (SiteEntity site : sites) {
+            Integer maxPageId = pageRepository.findMaxIdBySite(site);
+            Long maxLemmaId = lemmaRepository.findMaxIdBySite(site);
+            hash = hash * 31 + site.getId();
+            hash = hash * 31 + site.getIndexVersion();
+            hash = hash * 31 + pageRepository.countBySite(site);
+            hash = hash * 31 + (maxPageId == null ? 0 : maxPageId);
+            hash = hash * 31 + (maxLemmaId == null ? 0 : maxLemmaId);
+        }
+        return hash;
+    }
+
+    private void write(Path tmp, long fingerprint) throws IOException {
+        List<SiteEntity> sites = siteRepository.findByLiveTrue();
+        Map<String, LemmaPostings> postingsByLemma = new HashMap<>();
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     Channels.newOutputStream(channel), 1 << 16))) {
+            long position = HEADER_SIZE;
+            out.write(new byte[HEADER_SIZE]);
+
+            // Сайты по очереди, страницы по возрастанию id: пары каждой леммы сразу ложатся группами по сайтам
+            for (SiteEntity site : sites) {
+                Integer minId = pageRepository.findMinIdBySite(site);
+                Integer maxId = pageRepository.findMaxIdBySite(site);
+                if (minId == null || maxId == null) {
+                    continue;
+                }
+                for (long from = minId; from <= maxId; from += PAGE_CHUNK) {
+                    for (IndexPosting posting : indexRepository.findPostingsBySiteAndPageIdBetween(site, (int) from,
+                            (int) Math.min(from + PAGE_CHUNK - 1, maxId))) {
+                        byte[] positions = posting.positions() == null ? new byte[0] : posting.positions();
+                        postingsByLemma.computeIfAbsent(posting.lemma(), key -> new LemmaPostings())
+                                .add(site.getId(), posting.pageId(), checked(position));
+                        out.writeInt(posting.pageId());
+                        out.writeLong(posting.lemmaId());
+                        out.writeFloat(posting.ranking());
+                        out.writeInt(positions.length);
+                        out.write(positions);
+                        position += RECORD_HEADER + positions.length;
+                    }
+                }
+            }
+
+            List<byte[]> lemmas = new ArrayList<>(postingsByLemma.size());
+            postingsByLemma.keySet().forEach(lemma -> lemmas.add(lemma.getBytes(StandardCharsets.UTF_8)));
+            lemmas.sort(Arrays::compareUnsigned);
+
+            int[] listOffsets = new int[lemmas.size()];
+            for (int i = 0; i < lemmas.size(); i++) {
+                IntList pairs = postingsByLemma.get(new String(lemmas.get(i), StandardCharsets.UTF_8)).pairs;
+                listOffsets[i] = checked(position);
+                for (int p = 0; p < pairs.size; p++) {
+                    out.writeInt(pairs.values[p]);
+                }
+                position += 4L * pairs.size;
+            }
+
+            int[] entryOffsets = new int[lemmas.size()];
+            for (int i = 0; i < lemmas.size(); i++) {
+                byte[] lemma = lemmas.get(i);
+                LemmaPostings postings = postingsByLemma.get(new String(lemma, StandardCharsets.UTF_8));
+                entryOffsets[i] = checked(position);
+                out.writeShort(lemma.length);
+                out.write(lemma);
+                out.writeInt(postings.pairs.size / 2);
+                out.writeInt(listOffsets[i]);
+                out.writeInt(postings.groups.size / 3);
+                for (int g = 0; g < postings.groups.size; g++) {
+                    out.writeInt(postings.groups.values[g]);
+                }
+                position += 2 + lemma.length + 12 + 4L * postings.groups.size;
+            }
+
+            long dictionaryOffset = position;
+            for (int entryOffset : entryOffsets) {
+                out.writeInt(entryOffset);
+            }
+            position += 4L * entryOffsets.length;
+
+            long sitesOffset = checked(position);
+            for (SiteEntity site : sites) {
+                byte[] url = site.getUrl().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(site.getId());
+                out.writeShort(url.length);
+                out.write(url);
+                position += 6 + url.length;
+            }
+            checked(position);
+            out.flush();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putLong(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putInt(sites.size())
+                    .putLong(fingerprint)
+                    .putInt(lemmas.size())
+                    .putInt(0)
+                    .putLong(sitesOffset)
+                    .putLong(dictionaryOffset)
+                    .putLong(System.currentTimeMillis());
+            header.rewind();
+            channel.write(header, 0);
+            channel.force(true);
+        }
+    }
+
+    private static int checked(long position) throws IOException {
+        if (position > Integer.MAX_VALUE) {
+            throw new IOException("Снимок индекса больше 2 ГБ");
+        }
+        return (int) position;
+    }
+
+    /**
+     * Растущий массив int без упаковки в Integer.
+     */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * Вхождения леммы при записи: пары {pageId, смещение записи} и группы {siteId, начало, длина} в парах.
+     */
+    private static final class LemmaPostings {
+        private final IntList pairs = new IntList();
+        private final IntList groups = new IntList();
+
+        private void add(int siteId, int pageId, int record) {
+            if (groups.size == 0 || groups.values[groups.size - 3] != siteId) {
+                groups.add(siteId);
+                groups.add(pairs.size / 2);
+                groups.add(0);
+            }
+            groups.values[groups.size - 1]++;
+            pairs.add(pageId);
+            pairs.add(record);
+        }
+    }
+
+    /**
+     * Открытый снимок. Чтение только абсолютными get, поэтому один буфер безопасно читают параллельные запросы.
+     */
+    public static final class Segment {
+        private final MappedByteBuffer buffer;
+        private final long fingerprint;
+        private final int lemmaCount;
+        private final int dictionaryOffset;
+        private final Map<String, Integer> siteIds = new HashMap<>();
+
+        private Segment(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+            int siteCount = buffer.getInt(12);
+            this.fingerprint = buffer.getLong(16);
+            this.lemmaCount = buffer.getInt(24);
+            int position = (int) buffer.getLong(32);
+            this.dictionaryOffset = (int) buffer.getLong(40);
+            for (int i = 0; i < siteCount; i++) {
+                int id = buffer.getInt(position);
+                byte[] url = new byte[buffer.getShort(position + 4) & 0xFFFF];
+                buffer.get(position + 6, url);
+                siteIds.put(new String(url, StandardCharsets.UTF_8), id);
+                position += 6 + url.length;
+            }
+        }
+
+        static Segment open(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                    throw new IOException("Некорректный размер снимка: " + size);
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                if (buffer.getLong(0) != MAGIC) {
+                    throw new IOException("Файл не является снимком индекса");
+                }
+                if (buffer.getInt(8) != FORMAT_VERSION) {
+                    throw new IOException("Версия формата снимка " + buffer.getInt(8) + ", ожидалась " + FORMAT_VERSION);
+                }
+                return new Segment(buffer);
+            }
+        }
+
+        public long sizeBytes() {
+            return buffer.capacity();
+        }
+
+        /**
+         * Число страниц живых поколений, на которых встречается лемма.
+         */
+        public int documentFrequency(String lemma) {
+            Entry entry = find(lemma);
+            return entry == null ? 0 : entry.count;
+        }
+
+        /**
+         * Страницы сайта, на которых есть все леммы, с их вхождениями. Первая лемма читается целиком в пределах
+         * группы сайта, для остальных найденные страницы ищутся в их группах галопом, поэтому леммы лучше
+         * передавать от редких к частым.
+         */
+        public Map<Integer, List<IndexPosting>> matchingPages(List<String> lemmas, String siteUrl) {
+            Map<Integer, List<IndexPosting>> byPage = new LinkedHashMap<>();
+            Integer siteId = siteIds.get(siteUrl);
+            if (siteId == null || lemmas.isEmpty()) {
+                return byPage;
+            }
+            for (int l = 0; l < lemmas.size(); l++) {
+                Entry entry = find(lemmas.get(l));
+                int group = entry == null ? -1 : entry.group(siteId);
+                if (group < 0) {
+                    return new LinkedHashMap<>();
+                }
+                int from = entry.groupStart(group);
+                int to = from + entry.groupLength(group);
+                if (l == 0) {
+                    for (int i = from; i < to; i++) {
+                        byPage.computeIfAbsent(entry.pageAt(i), key -> new ArrayList<>()).add(entry.posting(i));
+                    }
+                } else {
+                    // Ключи идут по возрастанию pageId, поэтому поиск в группе продолжается с прошлой позиции
+                    int cursor = from;
+                    Iterator<Map.Entry<Integer, List<IndexPosting>>> pages = byPage.entrySet().iterator();
+                    while (pages.hasNext()) {
+                        Map.Entry<Integer, List<IndexPosting>> page = pages.next();
+                        cursor = entry.lowerBound(cursor, to, page.getKey());
+                        if (cursor < to && entry.pageAt(cursor) == page.getKey()) {
+                            page.getValue().add(entry.posting(cursor));
+                        } else {
+                            pages.remove();
+                        }
+                    }
+                }
+                if (byPage.isEmpty()) {
+                    break;
+                }
+            }
+            return byPage;
+        }
+
+        /**
+         * Вхождения лемм на указанных страницах: в каждой группе сайта страницы ищутся галопом.
+         */
+        public List<IndexPosting> postings(List<String> lemmas, Set<Integer> pageIds) {
+            int[] sorted = pageIds.stream().mapToInt(Integer::intValue).sorted().toArray();
+            List<IndexPosting> postings = new ArrayList<>();
+            for (String lemma : lemmas) {
+                Entry entry = find(lemma);
+                if (entry == null) {
+                    continue;
+                }
+                for (int group = 0; group < entry.groupCount; group++) {
+                    int cursor = entry.groupStart(group);
+                    int to = cursor + entry.groupLength(group);
+                    for (int pageId : sorted) {
+                        cursor = entry.lowerBound(cursor, to, pageId);
+                        if (cursor >= to) {
+                            break;
+                        }
+                        if (entry.pageAt(cursor) == pageId) {
+                            postings.add(entry.posting(cursor));
+                        }
+                    }
+                }
+            }
+            return postings;
+        }
+
+        /**
+         * Двоичный поиск статьи словаря по байтам леммы; null, если леммы нет.
+         */
+        private Entry find(String lemma) {
+            byte[] key = lemma.getBytes(StandardCharsets.UTF_8);
+            int low = 0;
+            int high = lemmaCount - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int entry = buffer.getInt(dictionaryOffset + 4 * middle);
+                byte[] candidate = new byte[buffer.getShort(entry) & 0xFFFF];
+                buffer.get(entry + 2, candidate);
+                int compare = Arrays.compareUnsigned(candidate, key);
+                if (compare < 0) {
+                    low = middle + 1;
+                } else if (compare > 0) {
+                    high = middle - 1;
+                } else {
+                    return new Entry(lemma, entry + 2 + candidate.length);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Статья словаря: число вхождений, смещение пар и группы по сайтам.
+         */
+        private final class Entry {
+            private final String lemma;
+            private final int count;
+            private final int pairs;
+            private final int groupCount;
+            private final int groups;
+
+            private Entry(String lemma, int position) {
+                this.lemma = lemma;
+                this.count = buffer.getInt(position);
+                this.pairs = buffer.getInt(position + 4);
+                this.groupCount = buffer.getInt(position + 8);
+                this.groups = position + 12;
+            }
+
+            private int group(int siteId) {
+                for (int group = 0; group < groupCount; group++) {
+                    if (buffer.getInt(groups + 12 * group) == siteId) {
+                        return group;
+                    }
+                }
+                return -1;
+            }
+
+            private int groupStart(int group) {
+                return buffer.getInt(groups + 12 * group + 4);
+            }
+
+            private int groupLength(int group) {
+                return buffer.getInt(groups + 12 * group + 8);
+            }
+
+            private int pageAt(int index) {
+                return buffer.getInt(pairs + 8 * index);
+            }
+
+            /**
+             * Первая позиция в [from, to) с pageId не меньше искомого: шаг удваивается от from,
+             * затем двоичный поиск в последнем шаге.
+             */
+            private int lowerBound(int from, int to, int pageId) {
+                if (from >= to || pageAt(from) >= pageId) {
+                    return from;
+                }
+                int low = from;
+                int step = 1;
+                while (low + step < to && pageAt(low + step) < pageId) {
+                    low += step;
+                    step <<= 1;
+                }
+                int left = low + 1;
+                int right = Math.min(low + step, to);
+                while (left < right) {
+                    int middle = (left + right) >>> 1;
+                    if (pageAt(middle) < pageId) {
+                        left = middle + 1;
+                    } else {
+                        right = middle;
+                    }
+                }
+                return left;
+            }
+
+            private IndexPosting posting(int index) {
+                int record = buffer.getInt(pairs + 8 * index + 4);
+                byte[] positions = new byte[buffer.getInt(record + 16)];
+                buffer.get(record + RECORD_HEADER, positions);
+                return new IndexPosting(buffer.getInt(record), buffer.getLong(record + 4), lemma,
+                        buffer.getFloat(record + 12), positions);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package searchengine.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import searchengine.model.SiteEntity;
+import searchengine.services.interfaces.IndexUpdateListener;
+
+import java.util.List;
+
+/**
+ * Рассылка изменений индекса подписчикам {@link IndexUpdateListener}. Ошибка подписчика
+ * не влияет на индексацию в БД.
+ */
+@Slf4j
+@Component
+public class IndexUpdates {
+
+    private final ObjectProvider<IndexUpdateListener> listeners;
+
+    public IndexUpdates(ObjectProvider<IndexUpdateListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    public void siteCommitted(SiteEntity site) {
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                listener.siteCommitted(site);
+            } catch (RuntimeException e) {
+                log.error("Ошибка подписчика индекса при переключении поколения сайта {}", site.getUrl(), e);
+            }
+        });
+    }
+
+    public void pagesWritten(SiteEntity site, List<PageBatchWriter.ParsedPage> pages) {
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                listener.pagesWritten(site, pages);
+            } catch (RuntimeException e) {
+                log.error("Ошибка подписчика индекса при записи страниц сайта {}", site.getUrl(), e);
+            }
+        });
+    }
+
+    public void pagesDeleted(SiteEntity site, List<String> paths) {
+        listeners.orderedStream().forEach(listener -> {
+            try {
+                listener.pagesDeleted(site, paths);
+            } catch (RuntimeException e) {
+                log.error("Ошибка подписчика индекса при удалении страниц сайта {}", site.getUrl(), e);
+            }
+        });
+    }
+}
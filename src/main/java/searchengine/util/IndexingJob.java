@@ -0,0 +1,122 @@
+package searchengine.util;
+
+import searchengine.dto.indexing.IndexingJobStatus;
+import searchengine.dto.indexing.JobState;
+import searchengine.model.SiteEntity;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Задача индексации одного сайта: состояние, время выполнения и future завершения.
+ * Отмена кооперативная — обходчик проверяет isCancelled() между этапами обработки страницы
+ * и перестает порождать новые задачи; потоки не прерываются.
+ */
+public class IndexingJob {
+
+    private final SiteEntity site;
+    private final AtomicReference<JobState> state = new AtomicReference<>(JobState.QUEUED);
+    private final CompletableFuture<JobState> completion = new CompletableFuture<>();
+    private final LongAdder pagesIndexed = new LongAdder();
+
+    private volatile long startedAtNanos;
+    private volatile Long startedAt;
+    private volatile Long finishedAt;
+    private volatile Long durationMs;
+    private volatile String error;
+
+    public IndexingJob(SiteEntity site) {
+        this.site = site;
+    }
+
+    public SiteEntity site() {
+        return site;
+    }
+
+    public JobState state() {
+        return state.get();
+    }
+
+    public CompletableFuture<JobState> completion() {
+        return completion;
+    }
+
+    public boolean start() {
+        if (!state.compareAndSet(JobState.QUEUED, JobState.RUNNING)) {
+            return false;
+        }
+        startedAtNanos = System.nanoTime();
+        startedAt = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Просит задачу остановиться. Задача, еще не начавшая работу, сразу считается отмененной.
+     */
+    public void cancel(String reason) {
+        error = reason;
+        if (state.compareAndSet(JobState.QUEUED, JobState.CANCELLED)) {
+            finishedAt = System.currentTimeMillis();
+            durationMs = 0L;
+            completion.complete(JobState.CANCELLED);
+            return;
+        }
+        state.compareAndSet(JobState.RUNNING, JobState.CANCELLING);
+    }
+
+    public boolean isCancelled() {
+        JobState current = state.get();
+        return current == JobState.CANCELLING || current == JobState.CANCELLED;
+    }
+
+    public boolean isDone() {
+        return state.get().isFinal();
+    }
+
+    /**
+     * Фиксирует итог задачи. Остановленная задача завершается как CANCELLED, что бы ни передал вызывающий.
+     *
+     * @return длительность задачи в наносекундах
+     */
+    public long finish(JobState outcome, String reason) {
+        JobState current;
+        JobState finalState;
+        do {
+            current = state.get();
+            if (current.isFinal()) {
+                return 0;
+            }
+            finalState = current == JobState.CANCELLING ? JobState.CANCELLED : outcome;
+        } while (!state.compareAndSet(current, finalState));
+
+        if (reason != null && finalState != JobState.CANCELLED) {
+            error = reason;
+        }
+        long nanos = System.nanoTime() - startedAtNanos;
+        finishedAt = System.currentTimeMillis();
+        durationMs = nanos / 1_000_000;
+        completion.complete(finalState);
+        return nanos;
+    }
+
+    public void pageIndexed() {
+        pagesIndexed.increment();
+    }
+
+    public String error() {
+        return error;
+    }
+
+    public IndexingJobStatus toStatus() {
+        IndexingJobStatus status = new IndexingJobStatus();
+        status.setSite(site.getUrl());
+        status.setState(state.get());
+        status.setStartedAt(startedAt);
+        status.setFinishedAt(finishedAt);
+        status.setDurationMs(durationMs);
+        status.setPagesIndexed(pagesIndexed.sum());
+        status.setError(error);
+        return status;
+    }
+}
@@ -0,0 +1,87 @@
+package searchengine.util;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Анализатор Lucene поверх {@link LemmaFinder}: в индекс попадают те же леммы, что и в таблицу lemma.
+ * Позиция термина — порядковый номер слова в тексте, как в index_link.positions; нелемматизируемые
+ * слова пропускаются, но занимают позицию, поэтому фразовые запросы совпадают с JPA-поиском.
+ */
+public class LemmaAnalyzer extends Analyzer {
+
+    private final LemmaFinder lemmaFinder;
+
+    public LemmaAnalyzer(LemmaFinder lemmaFinder) {
+        this.lemmaFinder = lemmaFinder;
+    }
+
+    @Override
+    protected TokenStreamComponents createComponents(String fieldName) {
+        return new TokenStreamComponents(new LemmaTokenizer(lemmaFinder));
+    }
+
+    private static final class LemmaTokenizer extends Tokenizer {
+
+        private final LemmaFinder lemmaFinder;
+        private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+        private final OffsetAttribute offsetAttribute = addAttribute(OffsetAttribute.class);
+        private final PositionIncrementAttribute positionAttribute = addAttribute(PositionIncrementAttribute.class);
+
+        private List<LemmaFinder.WordToken> tokens = Collections.emptyList();
+        private int next;
+        private int lastPosition;
+        private int length;
+
+        private LemmaTokenizer(LemmaFinder lemmaFinder) {
+            this.lemmaFinder = lemmaFinder;
+        }
+
+        @Override
+        public void reset() throws IOException {
+            super.reset();
+            StringBuilder text = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                text.append(buffer, 0, read);
+            }
+            tokens = lemmaFinder.tokenize(text.toString());
+            length = text.length();
+            next = 0;
+            lastPosition = -1;
+        }
+
+        @Override
+        public boolean incrementToken() {
+            clearAttributes();
+            while (next < tokens.size()) {
+                int position = next;
+                LemmaFinder.WordToken token = tokens.get(next++);
+                if (token.lemma() == null) {
+                    continue;
+                }
+                termAttribute.setEmpty().append(token.lemma());
+                offsetAttribute.setOffset(correctOffset(token.start()), correctOffset(token.start() + token.length()));
+                positionAttribute.setPositionIncrement(position - lastPosition);
+                lastPosition = position;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void end() throws IOException {
+            super.end();
+            int finalOffset = correctOffset(length);
+            offsetAttribute.setOffset(finalOffset, finalOffset);
+        }
+    }
+}
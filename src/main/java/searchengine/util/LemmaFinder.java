@@ -6,8 +6,11 @@ import org.jsoup.Jsoup;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -19,36 +22,46 @@ public class LemmaFinder {
     private final LuceneMorphology luceneMorphology;
     private static final String WORD_TYPE_REGEX = "\\W\\w&&[^а-яА-Я\\s]";
     private static final String[] particlesNames = new String[]{"МЕЖД", "ПРЕДЛ", "СОЮЗ", "ЧАСТ"};
+    private static final String NO_LEMMA = "";
+
+    /**
+     * Слово текста: смещение в исходной строке, длина и нормальная форма
+     * (null, если слово не лемматизируется — служебные части речи и т.п.).
+     * Порядковый номер токена в списке является его позицией в тексте.
+     */
+    public record WordToken(int start, int length, String lemma) {
+    }
 
     public LemmaFinder() throws IOException {
         this.luceneMorphology = new RussianLuceneMorphology();
     }
 
     public Map<String, Integer> collectLemmas(String text) {
-        String[] words = arrayContainsRussianWords(text);
         HashMap<String, Integer> lemmas = new HashMap<>();
-
-        for (String word : words) {
-            if (word.isBlank() || !isCorrectWordForm(word)) {
-                continue;
+        for (WordToken token : tokenize(text)) {
+            if (token.lemma() != null) {
+                lemmas.merge(token.lemma(), 1, Integer::sum);
             }
+        }
+        return lemmas;
+    }
 
-            List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
-            if (anyWordBaseBelongToParticle(wordBaseForms)) {
-                continue;
-            }
+    /**
+     * Позиции (порядковые номера слов) каждой леммы в тексте, по возрастанию.
+     */
+    public Map<String, List<Integer>> collectLemmaPositions(String text) {
+        return groupPositions(tokenize(text));
+    }
 
-            List<String> normalForms = luceneMorphology.getNormalForms(word);
-            if (normalForms.isEmpty()) {
-                continue;
+    public Map<String, List<Integer>> groupPositions(List<WordToken> tokens) {
+        Map<String, List<Integer>> positions = new LinkedHashMap<>();
+        for (int position = 0; position < tokens.size(); position++) {
+            String lemma = tokens.get(position).lemma();
+            if (lemma != null) {
+                positions.computeIfAbsent(lemma, key -> new ArrayList<>()).add(position);
             }
-
-            String normalWord = normalForms.get(0);
-
-            lemmas.put(normalWord, lemmas.getOrDefault(normalWord, 0) + 1);
         }
-
-        return lemmas;
+        return positions;
     }
 
     public String cleanHtml(String html) {
@@ -56,29 +69,71 @@ public class LemmaFinder {
     }
 
     public Set<String> getLemmaSet(String text) {
-        String[] words = arrayContainsRussianWords(text);
         Set<String> lemmaSet = new HashSet<>();
-
-        for (String word : words) {
-            if (word.isBlank() || !isCorrectWordForm(word)) {
-                continue;
+        for (WordToken token : tokenize(text)) {
+            if (token.lemma() != null) {
+                lemmaSet.add(token.lemma());
             }
+        }
+        return lemmaSet;
+    }
 
-            List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
-            if (anyWordBaseBelongToParticle(wordBaseForms)) {
-                continue;
-            }
+    public List<WordToken> tokenize(String text) {
+        int[] boundaries = wordBoundaries(text);
+        List<WordToken> tokens = new ArrayList<>(boundaries.length / 2);
+        Map<String, String> normalForms = new HashMap<>();
+
+        for (int i = 0; i < boundaries.length; i += 2) {
+            int start = boundaries[i];
+            int end = boundaries[i + 1];
+            String word = text.substring(start, end).toLowerCase(Locale.ROOT);
+            String lemma = normalForms.computeIfAbsent(word, this::findNormalForm);
+            tokens.add(new WordToken(start, end - start, lemma.equals(NO_LEMMA) ? null : lemma));
+        }
+        return tokens;
+    }
 
-            List<String> normalForms = luceneMorphology.getNormalForms(word);
-            if (normalForms.isEmpty()) {
+    private static int[] wordBoundaries(String text) {
+        int[] boundaries = new int[16];
+        int count = 0;
+        int length = text.length();
+        int i = 0;
+
+        while (i < length) {
+            if (!isRussianLetter(text.charAt(i))) {
+                i++;
                 continue;
             }
+            int start = i;
+            while (i < length && isRussianLetter(text.charAt(i))) {
+                i++;
+            }
+            if (count + 2 > boundaries.length) {
+                boundaries = Arrays.copyOf(boundaries, boundaries.length * 2);
+            }
+            boundaries[count++] = start;
+            boundaries[count++] = i;
+        }
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    private static boolean isRussianLetter(char c) {
+        char lower = Character.toLowerCase(c);
+        return lower >= 'а' && lower <= 'я';
+    }
 
-            String normalWord = normalForms.get(0);
-            lemmaSet.add(normalWord);
+    private String findNormalForm(String word) {
+        if (!isCorrectWordForm(word)) {
+            return NO_LEMMA;
         }
 
-        return lemmaSet;
+        List<String> wordBaseForms = luceneMorphology.getMorphInfo(word);
+        if (anyWordBaseBelongToParticle(wordBaseForms)) {
+            return NO_LEMMA;
+        }
+
+        List<String> normalForms = luceneMorphology.getNormalForms(word);
+        return normalForms.isEmpty() ? NO_LEMMA : normalForms.get(0);
     }
 
     private boolean anyWordBaseBelongToParticle(List<String> wordBaseForms) {
@@ -94,13 +149,6 @@ public class LemmaFinder {
         return false;
     }
 
-    private String[] arrayContainsRussianWords(String text) {
-        return text.toLowerCase(Locale.ROOT)
-                .replaceAll("([^а-я\\s])", " ")
-                .trim()
-                .split("\\s+");
-    }
-
     private boolean isCorrectWordForm(String word) {
         List<String> wordInfo = luceneMorphology.getMorphInfo(word);
         for (String morphInfo : wordInfo) {
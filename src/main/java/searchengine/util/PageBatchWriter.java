@@ -0,0 +1,202 @@
+package searchengine.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.dto.indexing.LemmaCount;
+import searchengine.model.IndexEntity;
+import searchengine.model.LemmaEntity;
+import searchengine.model.PageEntity;
+import searchengine.model.SiteEntity;
+import searchengine.model.Status;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Запись пачки переиндексированных страниц одного сайта одной транзакцией: старые версии страниц
+ * удаляются массовыми DELETE, частоты лемм (число страниц с леммой) меняются на суммарную разницу
+ * по всей пачке, новые страницы и записи индекса сохраняются через saveAll.
+ */
+@Slf4j
+@Component
+public class PageBatchWriter {
+
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final IndexRepository indexRepository;
+    private final CacheManagement cacheManagement;
+    private final IndexUpdates indexUpdates;
+    private final SiteGenerations siteGenerations;
+    private final TransactionTemplate transactionTemplate;
+
+    public PageBatchWriter(SiteRepository siteRepository, PageRepository pageRepository, LemmaRepository lemmaRepository,
+                           IndexRepository indexRepository, CacheManagement cacheManagement,
+                           IndexUpdates indexUpdates, SiteGenerations siteGenerations,
+                           PlatformTransactionManager transactionManager) {
+        this.siteRepository = siteRepository;
+        this.pageRepository = pageRepository;
+        this.lemmaRepository = lemmaRepository;
+        this.indexRepository = indexRepository;
+        this.cacheManagement = cacheManagement;
+        this.indexUpdates = indexUpdates;
+        this.siteGenerations = siteGenerations;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Скачанная и разобранная страница, готовая к записи.
+     */
+    public record ParsedPage(String path, int code, String content, List<LemmaFinder.WordToken> tokens,
+                             Map<String, List<Integer>> positions) {
+    }
+
+    /**
+     * Записи в один сайт идут по очереди, под блокировкой живого поколения из {@link SiteGenerations}:
+     * у lemma нет уникального ключа (lemma, site_id), и две параллельные пачки создали бы одну лемму дважды.
+     *
+     * @return false, если поколение сайта уже заменено полной индексацией и пачка не записана
+     */
+    public boolean write(SiteEntity site, List<ParsedPage> pages) {
+        if (pages.isEmpty()) {
+            return true;
+        }
+        long start = System.nanoTime();
+        boolean written = siteGenerations.writeLive(site,
+                () -> transactionTemplate.executeWithoutResult(status -> writeInTransaction(site, pages)));
+        if (!written) {
+            log.warn("Поколение сайта {} (site_id {}) заменено, пачка из {} страниц не записана",
+                    site.getUrl(), site.getId(), pages.size());
+            return false;
+        }
+        // Подписчики (снимок индекса) сбрасывают старые данные до смены поколения кэша поиска
+        indexUpdates.pagesWritten(site, pages);
+        cacheManagement.bumpIndexGeneration();
+        log.info("Записано {} страниц сайта {} за {} мс", pages.size(), site.getUrl(),
+                (System.nanoTime() - start) / 1_000_000);
+        return true;
+    }
+
+    /**
+     * Удаляет страницы, пропавшие с сайта, вместе с их записями индекса и вкладом в частоты лемм.
+     *
+     * @return false, если поколение сайта уже заменено полной индексацией
+     */
+    public boolean delete(SiteEntity site, List<String> paths) {
+        if (paths.isEmpty()) {
+            return true;
+        }
+        boolean deleted = siteGenerations.writeLive(site, () -> transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, Integer> removedByLemmaId = deleteOldVersions(site, paths);
+            subtractFrequencies(removedByLemmaId);
+            siteRepository.incrementIndexVersion(site.getId());
+        }));
+        if (!deleted) {
+            return false;
+        }
+        indexUpdates.pagesDeleted(site, paths);
+        cacheManagement.bumpIndexGeneration();
+        log.info("Удалено {} пропавших страниц сайта {}", paths.size(), site.getUrl());
+        return true;
+    }
+
+    private void subtractFrequencies(Map<Long, Integer> removedByLemmaId) {
+        if (removedByLemmaId.isEmpty()) {
+            return;
+        }
+        List<LemmaEntity> changed = new ArrayList<>();
+        for (LemmaEntity lemma : lemmaRepository.findAllById(removedByLemmaId.keySet())) {
+            lemma.setFrequency(Math.max(0, lemma.getFrequency() - removedByLemmaId.get(lemma.getId())));
+            changed.add(lemma);
+        }
+        lemmaRepository.saveAll(changed);
+    }
+
+    private void writeInTransaction(SiteEntity site, List<ParsedPage> pages) {
+        Map<Long, Integer> removedByLemmaId = deleteOldVersions(site, pages.stream().map(ParsedPage::path).toList());
+
+        Map<String, Integer> added = new HashMap<>();
+        for (ParsedPage page : pages) {
+            page.positions().keySet().forEach(lemma -> added.merge(lemma, 1, Integer::sum));
+        }
+
+        Map<String, LemmaEntity> lemmas = new HashMap<>();
+        for (LemmaEntity lemma : lemmaRepository.findBySiteAndLemmaIn(site, added.keySet())) {
+            lemmas.putIfAbsent(lemma.getLemma(), lemma);
+        }
+        List<LemmaEntity> changed = new ArrayList<>();
+        if (!removedByLemmaId.isEmpty()) {
+            for (LemmaEntity lemma : lemmaRepository.findAllById(removedByLemmaId.keySet())) {
+                lemma.setFrequency(Math.max(0, lemma.getFrequency() - removedByLemmaId.get(lemma.getId())));
+                changed.add(lemma);
+            }
+        }
+        added.forEach((text, count) -> {
+            LemmaEntity lemma = lemmas.computeIfAbsent(text, key -> {
+                LemmaEntity entity = new LemmaEntity();
+                entity.setLemma(key);
+                entity.setSite(site);
+                return entity;
+            });
+            lemma.setFrequency(lemma.getFrequency() + count);
+            changed.add(lemma);
+        });
+        lemmaRepository.saveAll(changed);
+
+        Map<String, Long> lemmaIds = new HashMap<>();
+        lemmas.forEach((text, lemma) -> lemmaIds.put(text, lemma.getId()));
+
+        List<PageEntity> entities = new ArrayList<>(pages.size());
+        for (ParsedPage page : pages) {
+            PageEntity entity = new PageEntity();
+            entity.setSite(site);
+            entity.setPath(page.path());
+            entity.setCode(page.code());
+            entity.setContent(page.content());
+            entity.setContentHash(ContentHash.of(page.content()));
+            entity.setTokenOffsets(TokenOffsets.encode(page.tokens(), lemmaIds));
+            entity.setStatus(Status.INDEXED);
+            entities.add(entity);
+        }
+        pageRepository.saveAll(entities);
+
+        List<IndexEntity> indices = new ArrayList<>();
+        for (int i = 0; i < pages.size(); i++) {
+            for (Map.Entry<String, List<Integer>> entry : pages.get(i).positions().entrySet()) {
+                IndexEntity index = new IndexEntity();
+                index.setPage(entities.get(i));
+                index.setLemma(lemmas.get(entry.getKey()));
+                index.setRanking((float) entry.getValue().size());
+                index.setPositions(PositionCodec.encode(entry.getValue()));
+                indices.add(index);
+            }
+        }
+        indexRepository.saveAll(indices);
+        siteRepository.incrementIndexVersion(site.getId());
+    }
+
+    /**
+     * Удаляет прежние версии страниц по путям и возвращает, со скольких из них ушла каждая лемма.
+     */
+    private Map<Long, Integer> deleteOldVersions(SiteEntity site, List<String> paths) {
+        List<Integer> oldIds = pageRepository.findIdsBySiteAndPathIn(site, paths);
+        if (oldIds.isEmpty()) {
+            return Map.of();
+        }
+        Map<Long, Integer> removed = new HashMap<>();
+        for (LemmaCount count : indexRepository.countPagesByLemmaForPages(oldIds)) {
+            removed.put(count.lemmaId(), count.count().intValue());
+        }
+        indexRepository.deleteByPageIds(oldIds);
+        pageRepository.deleteAllByIdInBatch(oldIds);
+        return removed;
+    }
+}
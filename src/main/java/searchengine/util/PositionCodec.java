@@ -0,0 +1,58 @@
+package searchengine.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Компактное хранение позиций леммы на странице: разности соседних позиций в формате varint
+ * (7 бит на байт, старший бит — признак продолжения).
+ */
+public final class PositionCodec {
+
+    private PositionCodec() {
+    }
+
+    public static byte[] encode(List<Integer> positions) {
+        byte[] buffer = new byte[positions.size() * 2 + 4];
+        int length = 0;
+        int previous = 0;
+
+        for (int position : positions) {
+            int delta = position - previous;
+            previous = position;
+            if (length + 5 > buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            while ((delta & ~0x7F) != 0) {
+                buffer[length++] = (byte) ((delta & 0x7F) | 0x80);
+                delta >>>= 7;
+            }
+            buffer[length++] = (byte) delta;
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    public static int[] decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            return new int[0];
+        }
+        int[] positions = new int[data.length];
+        int count = 0;
+        int previous = 0;
+        int i = 0;
+
+        while (i < data.length) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[i++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0 && i < data.length);
+            previous += delta;
+            positions[count++] = previous;
+        }
+        return Arrays.copyOf(positions, count);
+    }
+}
@@ -0,0 +1,83 @@
+package searchengine.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Поиск фраз и минимального окна по позициям лемм на странице.
+ * Каждый массив позиций отсортирован по возрастанию.
+ */
+public final class ProximityMatcher {
+
+    private ProximityMatcher() {
+    }
+
+    /**
+     * Проверяет, что леммы встречаются подряд с теми же относительными смещениями, что и в запросе.
+     */
+    public static boolean containsPhrase(List<int[]> positions, int[] offsets) {
+        if (positions.isEmpty()) {
+            return false;
+        }
+        for (int start : positions.get(0)) {
+            boolean matched = true;
+            for (int i = 1; i < positions.size() && matched; i++) {
+                matched = Arrays.binarySearch(positions.get(i), start + offsets[i]) >= 0;
+            }
+            if (matched) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Минимальное окно [первая позиция, последняя позиция], содержащее хотя бы одно вхождение каждой леммы,
+     * или null, если какая-то из лемм на странице отсутствует.
+     */
+    public static int[] minimalWindow(List<int[]> positions) {
+        int lists = positions.size();
+        if (lists == 0) {
+            return null;
+        }
+        int total = 0;
+        for (int[] list : positions) {
+            if (list.length == 0) {
+                return null;
+            }
+            total += list.length;
+        }
+
+        long[] events = new long[total];
+        int e = 0;
+        for (int list = 0; list < lists; list++) {
+            for (int position : positions.get(list)) {
+                events[e++] = ((long) position << 32) | list;
+            }
+        }
+        Arrays.sort(events);
+
+        int[] counts = new int[lists];
+        int covered = 0;
+        int left = 0;
+        int[] best = null;
+
+        for (long event : events) {
+            if (counts[(int) event]++ == 0) {
+                covered++;
+            }
+            while (covered == lists) {
+                int start = (int) (events[left] >>> 32);
+                int end = (int) (event >>> 32);
+                if (best == null || end - start < best[1] - best[0]) {
+                    best = new int[]{start, end};
+                }
+                if (--counts[(int) events[left]] == 0) {
+                    covered--;
+                }
+                left++;
+            }
+        }
+        return best;
+    }
+}
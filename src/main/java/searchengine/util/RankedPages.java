@@ -0,0 +1,84 @@
+package searchengine.util;
+
+import java.util.Arrays;
+
+/**
+ * Результат ранжирования: id страниц и нормированная релевантность в порядке убывания релевантности
+ * (при равной релевантности — по возрастанию id страницы).
+ */
+public final class RankedPages {
+
+    public static final RankedPages EMPTY = new RankedPages(new int[0], new float[0]);
+
+    private final int[] pageIds;
+    private final float[] scores;
+
+    public RankedPages(int[] pageIds, float[] scores) {
+        this.pageIds = pageIds;
+        this.scores = scores;
+    }
+
+    /**
+     * Сортирует пары (pageId, score) и нормирует релевантность по максимальной.
+     */
+    public static RankedPages of(int[] pageIds, double[] relevance) {
+        int size = pageIds.length;
+        double maxRelevance = Arrays.stream(relevance).max().orElse(0.0);
+        float[] normalized = new float[size];
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            normalized[i] = (float) (maxRelevance > 0.0 ? relevance[i] / maxRelevance : relevance[i]);
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> compare(normalized[a], pageIds[a], normalized[b], pageIds[b]));
+
+        int[] sortedIds = new int[size];
+        float[] sortedScores = new float[size];
+        for (int i = 0; i < size; i++) {
+            sortedIds[i] = pageIds[order[i]];
+            sortedScores[i] = normalized[order[i]];
+        }
+        return new RankedPages(sortedIds, sortedScores);
+    }
+
+    /**
+     * Порядок выдачи: по убыванию релевантности, затем по возрастанию id страницы.
+     */
+    public static int compare(float score, int pageId, float otherScore, int otherPageId) {
+        int byScore = Float.compare(otherScore, score);
+        return byScore != 0 ? byScore : Integer.compare(pageId, otherPageId);
+    }
+
+    /**
+     * Позиция первой страницы, идущей в выдаче строго после (score, pageId).
+     */
+    public int positionAfter(float score, int pageId) {
+        int low = 0;
+        int high = pageIds.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(scores[middle], pageIds[middle], score, pageId) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public int estimatedBytes() {
+        return 64 + pageIds.length * (Integer.BYTES + Float.BYTES);
+    }
+
+    public int size() {
+        return pageIds.length;
+    }
+
+    public int pageId(int rank) {
+        return pageIds[rank];
+    }
+
+    public float score(int rank) {
+        return scores[rank];
+    }
+}
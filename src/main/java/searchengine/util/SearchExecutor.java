@@ -0,0 +1,166 @@
+package searchengine.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.exceptions.SearchOverloadedException;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Выполнение поисковых запросов вне общего ForkJoinPool: ограничение числа одновременных запросов,
+ * ограниченная очередь ожидания, дедлайн на запрос и отдельный пул для построения сниппетов.
+ */
+@Slf4j
+@Component
+public class SearchExecutor {
+
+    private final SearchSettings settings;
+    private final Semaphore permits;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger active = new AtomicInteger();
+    private final ThreadPoolExecutor renderPool;
+    private final ExecutorService streamExecutor;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedTimeout;
+    private final Counter deadlineExceeded;
+    private final Timer latency;
+
+    public SearchExecutor(SearchSettings settings, MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.permits = new Semaphore(settings.getMaxConcurrentQueries(), true);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.renderPool = new ThreadPoolExecutor(settings.getRenderThreads(), settings.getRenderThreads(),
+                60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(settings.getRenderQueueSize()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "search-render-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        this.streamExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("search-stream-", 0).factory());
+
+        Gauge.builder("search.queries.active", active, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("search.queries.queued", queued, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("search.render.queue", renderPool, pool -> pool.getQueue().size()).register(meterRegistry);
+        this.rejectedQueueFull = Counter.builder("search.queries.rejected").tag("reason", "queue_full")
+                .register(meterRegistry);
+        this.rejectedTimeout = Counter.builder("search.queries.rejected").tag("reason", "queue_timeout")
+                .register(meterRegistry);
+        this.deadlineExceeded = Counter.builder("search.queries.rejected").tag("reason", "deadline")
+                .register(meterRegistry);
+        this.latency = Timer.builder("search.latency")
+                .description("Время выполнения поискового запроса с учетом ожидания в очереди")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Выполняет запрос в вызывающем потоке, если удалось занять слот. Запрос получает
+     * момент дедлайна в терминах System.nanoTime(), отсчитанный от постановки в очередь.
+     */
+    public void admit(LongConsumer query) {
+        long queuedAt = System.nanoTime();
+        long deadline = queuedAt + settings.getDeadline().toNanos();
+        if (queued.incrementAndGet() > settings.getMaxQueuedQueries()) {
+            queued.decrementAndGet();
+            rejectedQueueFull.increment();
+            throw new SearchOverloadedException("Поисковый сервис перегружен, повторите запрос позже");
+        }
+
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(settings.getQueueTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SearchOverloadedException("Поисковый запрос прерван");
+        } finally {
+            queued.decrementAndGet();
+        }
+        if (!acquired) {
+            rejectedTimeout.increment();
+            throw new SearchOverloadedException("Поисковый сервис перегружен, повторите запрос позже");
+        }
+
+        active.incrementAndGet();
+        try {
+            query.accept(deadline);
+        } finally {
+            active.decrementAndGet();
+            permits.release();
+            latency.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public <T> CompletableFuture<T> render(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, renderPool);
+    }
+
+    /**
+     * Отдает результаты по порядку до дедлайна. При выходе по дедлайну или ошибке оставшиеся задачи
+     * отменяются: еще не начатые не займут пул рендеринга у запросов, которые уложились в срок.
+     */
+    public <T> void awaitAll(List<CompletableFuture<T>> futures, long deadline, Consumer<T> consumer) {
+        try {
+            for (CompletableFuture<T> future : futures) {
+                consumer.accept(await(future, deadline));
+            }
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    public <T> T await(CompletableFuture<T> future, long deadline) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            deadlineExceeded.increment();
+            throw new SearchOverloadedException("Превышено время выполнения поискового запроса");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SearchOverloadedException("Поисковый запрос прерван");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public void checkDeadline(long deadline) {
+        if (System.nanoTime() > deadline) {
+            deadlineExceeded.increment();
+            throw new SearchOverloadedException("Превышено время выполнения поискового запроса");
+        }
+    }
+
+    public void stream(Runnable task) {
+        streamExecutor.execute(task);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        renderPool.shutdownNow();
+        streamExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,79 @@
+package searchengine.util;
+
+import searchengine.dto.search.SearchDebug;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Замеры времени по этапам одного поискового запроса и счетчики кандидатов.
+ * Этапы построения сниппетов выполняются в нескольких потоках, поэтому время накапливается атомарно.
+ */
+public class SearchTrace {
+
+    public enum Stage {
+        LEMMATIZATION, CACHE_LOOKUP, SORT_LEMMAS, FIND_PAGES, FIND_POSTINGS, SCORING, LOAD_PAGES, SNIPPETS, HIGHLIGHT
+    }
+
+    private final long startedAt = System.nanoTime();
+    private final AtomicLongArray stageNanos = new AtomicLongArray(Stage.values().length);
+    private final Map<String, Long> counters = Collections.synchronizedMap(new LinkedHashMap<>());
+    private volatile boolean cacheHit;
+
+    public <T> T time(Stage stage, Supplier<T> action) {
+        long start = System.nanoTime();
+        try {
+            return action.get();
+        } finally {
+            stageNanos.addAndGet(stage.ordinal(), System.nanoTime() - start);
+        }
+    }
+
+    public void count(String name, long value) {
+        counters.merge(name, value, Long::sum);
+    }
+
+    public void setCacheHit(boolean cacheHit) {
+        this.cacheHit = cacheHit;
+    }
+
+    public long elapsedMillis() {
+        return (System.nanoTime() - startedAt) / 1_000_000;
+    }
+
+    public SearchDebug toDebug() {
+        Map<String, Double> stagesMs = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            stagesMs.put(stageName(stage), stageNanos.get(stage.ordinal()) / 1_000_000.0);
+        }
+        SearchDebug debug = new SearchDebug();
+        debug.setTotalMs((System.nanoTime() - startedAt) / 1_000_000.0);
+        debug.setCacheHit(cacheHit);
+        debug.setStagesMs(stagesMs);
+        synchronized (counters) {
+            debug.setCounters(new LinkedHashMap<>(counters));
+        }
+        return debug;
+    }
+
+    public String describe() {
+        StringJoiner joiner = new StringJoiner(", ");
+        for (Stage stage : Stage.values()) {
+            joiner.add(String.format(Locale.ROOT, "%s=%.1fms", stageName(stage),
+                    stageNanos.get(stage.ordinal()) / 1_000_000.0));
+        }
+        synchronized (counters) {
+            counters.forEach((name, value) -> joiner.add(name + "=" + value));
+        }
+        return joiner + ", cacheHit=" + cacheHit;
+    }
+
+    private static String stageName(Stage stage) {
+        return stage.name().toLowerCase(Locale.ROOT);
+    }
+}
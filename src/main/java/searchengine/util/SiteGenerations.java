@@ -0,0 +1,210 @@
+package searchengine.util;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import searchengine.config.Site;
+import searchengine.model.SiteEntity;
+import searchengine.model.Status;
+import searchengine.repositories.SiteRepository;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Поколения индекса сайта. Полная индексация пишет в новую строку site, которую поиск не видит;
+ * после обхода она одной транзакцией становится живой, а старое поколение удаляется в фоне.
+ * Неудачный обход удаляется целиком, живое поколение остается нетронутым.
+ */
+@Slf4j
+@Component
+public class SiteGenerations {
+
+    private final SiteRepository siteRepository;
+    private final SitePurger sitePurger;
+    private final CacheManagement cacheManagement;
+    private final IndexUpdates indexUpdates;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService purgeExecutor;
+    private final ConcurrentMap<String, Object> liveLocks = new ConcurrentHashMap<>();
+
+    public SiteGenerations(SiteRepository siteRepository, SitePurger sitePurger,
+                           CacheManagement cacheManagement, IndexUpdates indexUpdates,
+                           PlatformTransactionManager transactionManager) {
+        this.siteRepository = siteRepository;
+        this.sitePurger = sitePurger;
+        this.cacheManagement = cacheManagement;
+        this.indexUpdates = indexUpdates;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.purgeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "index-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Создает строящееся поколение сайта. Остатки прошлых незавершенных поколений удаляются в фоне.
+     */
+    public SiteEntity begin(Site siteConfig) {
+        for (SiteEntity leftover : siteRepository.findByUrlAndLiveFalse(siteConfig.getUrl())) {
+            purge(leftover);
+        }
+
+        SiteEntity site = new SiteEntity();
+        site.setUrl(siteConfig.getUrl());
+        site.setName(siteConfig.getName());
+        site.setStatus(Status.INDEXING);
+        site.setStatusTime(new Date());
+        site.setLive(false);
+        return siteRepository.save(site);
+    }
+
+    /**
+     * Делает построенное поколение живым и отправляет предыдущее на удаление.
+     */
+    public void commit(SiteEntity building) {
+        Optional<SiteEntity> previous;
+        synchronized (liveLock(building.getUrl())) {
+            previous = transactionTemplate.execute(status -> {
+                Optional<SiteEntity> live = siteRepository.findByUrlAndLiveTrue(building.getUrl());
+                live.ifPresent(site -> {
+                    site.setLive(false);
+                    siteRepository.save(site);
+                });
+                building.setLive(true);
+                building.setStatus(Status.INDEXED);
+                building.setStatusTime(new Date());
+                siteRepository.save(building);
+                return live;
+            });
+        }
+        // Подписчики (снимок индекса) сбрасывают старые данные до смены поколения кэша поиска
+        indexUpdates.siteCommitted(building);
+        cacheManagement.bumpIndexGeneration();
+        log.info("Новое поколение индекса сайта {} стало живым (site_id {})", building.getUrl(), building.getId());
+        if (previous != null) {
+            previous.ifPresent(this::purge);
+        }
+    }
+
+    /**
+     * Выполняет запись в живое поколение сайта, если оно все еще живое. Запись и переключение поколений
+     * сайта идут под одной блокировкой: после переключения запись в прежнее поколение отклоняется,
+     * иначе ее строки появились бы после того, как удаление поколения взяло диапазоны id.
+     *
+     * @return false, если поколение уже заменено и запись не выполнялась
+     */
+    public boolean writeLive(SiteEntity site, Runnable write) {
+        synchronized (liveLock(site.getUrl())) {
+            if (!siteRepository.existsByIdAndLiveTrue(site.getId())) {
+                return false;
+            }
+            write.run();
+            return true;
+        }
+    }
+
+    /**
+     * Отменяет строящееся поколение. Если у сайта есть живое поколение, ошибка переносится на него,
+     * а строящееся удаляется целиком; иначе остается пустая строка сайта с ошибкой.
+     */
+    public void abort(SiteEntity building, String error) {
+        Optional<SiteEntity> live = siteRepository.findByUrlAndLiveTrue(building.getUrl());
+        if (live.isPresent()) {
+            SiteEntity site = live.get();
+            site.setStatus(Status.FAILED);
+            site.setLastError(error);
+            site.setStatusTime(new Date());
+            siteRepository.save(site);
+            purge(building);
+        } else {
+            building.setStatus(Status.FAILED);
+            building.setLastError(error);
+            building.setStatusTime(new Date());
+            siteRepository.save(building);
+            purgeExecutor.execute(() -> deleteContent(building, false));
+        }
+        log.warn("Поколение индекса сайта {} отменено: {}", building.getUrl(), error);
+    }
+
+    /**
+     * Приводит поколения в порядок при старте, раньше загрузки снимка индекса: БД переживает перезапуск
+     * (ddl-auto: update), поэтому сначала становятся живыми сайты, проиндексированные до появления поколений,
+     * а затем удаляются поколения, чей обход прервала остановка приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void recover() {
+        markLegacyLive();
+        purgeInterrupted();
+    }
+
+    /**
+     * Колонка live добавляется к существующим строкам site со значением false, и без этого поиск не видел бы
+     * ничего до полной переиндексации, а begin() удалил бы такие строки как остатки. Живым становится
+     * последнее проиндексированное поколение каждого URL, у которого живого поколения нет.
+     */
+    private void markLegacyLive() {
+        Map<String, SiteEntity> latest = new HashMap<>();
+        for (SiteEntity site : siteRepository.findByStatusAndLiveFalse(Status.INDEXED)) {
+            latest.merge(site.getUrl(), site, (a, b) -> a.getId() > b.getId() ? a : b);
+        }
+        for (SiteEntity site : latest.values()) {
+            synchronized (liveLock(site.getUrl())) {
+                if (siteRepository.findByUrlAndLiveTrue(site.getUrl()).isEmpty()) {
+                    site.setLive(true);
+                    siteRepository.save(site);
+                    log.info("Сайт {} (site_id {}) проиндексирован до появления поколений и стал живым",
+                            site.getUrl(), site.getId());
+                }
+            }
+        }
+    }
+
+    private void purgeInterrupted() {
+        for (SiteEntity site : siteRepository.findByStatus(Status.INDEXING)) {
+            if (!site.isLive()) {
+                log.info("Удаляется прерванное поколение индекса сайта {} (site_id {})", site.getUrl(), site.getId());
+                purge(site);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purgeExecutor.shutdown();
+    }
+
+    private Object liveLock(String siteUrl) {
+        return liveLocks.computeIfAbsent(siteUrl, url -> new Object());
+    }
+
+    private void purge(SiteEntity site) {
+        purgeExecutor.execute(() -> deleteContent(site, true));
+    }
+
+    private void deleteContent(SiteEntity site, boolean withSiteRow) {
+        try {
+            if (withSiteRow) {
+                sitePurger.purge(site);
+            } else {
+                sitePurger.purgeContent(site);
+            }
+        } catch (RuntimeException e) {
+            log.error("Ошибка при удалении поколения сайта {} (site_id {})", site.getUrl(), site.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package searchengine.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.model.SiteEntity;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+
+/**
+ * Удаление содержимого сайта массовыми DELETE по диапазонам id, без загрузки сущностей.
+ * Каждый диапазон — отдельная короткая транзакция: сначала записи индекса страниц диапазона,
+ * затем сами страницы; леммы удаляются последними, когда ссылок на них уже нет.
+ */
+@Slf4j
+@Component
+public class SitePurger {
+
+    /**
+     * Строки лемм короткие и на них уже никто не ссылается, поэтому их диапазон шире диапазона страниц.
+     */
+    private static final int LEMMA_CHUNK_FACTOR = 50;
+
+    private final SiteRepository siteRepository;
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+    private final IndexRepository indexRepository;
+    private final int chunkSize;
+
+    public SitePurger(SiteRepository siteRepository, PageRepository pageRepository,
+                      LemmaRepository lemmaRepository, IndexRepository indexRepository,
+                      CrawlerSettings crawlerSettings) {
+        this.siteRepository = siteRepository;
+        this.pageRepository = pageRepository;
+        this.lemmaRepository = lemmaRepository;
+        this.indexRepository = indexRepository;
+        this.chunkSize = Math.max(crawlerSettings.getPurgeChunkSize(), 1);
+    }
+
+    /**
+     * Итог удаления: количество строк по таблицам и затраченное время.
+     */
+    public record Result(long pages, long lemmas, long indices, long millis) {
+    }
+
+    /**
+     * Удаляет страницы, леммы и записи индекса сайта; строка site остается.
+     */
+    public Result purgeContent(SiteEntity site) {
+        long start = System.nanoTime();
+        long indices = 0;
+        long pages = 0;
+        Integer minPageId = pageRepository.findMinIdBySite(site);
+        Integer maxPageId = pageRepository.findMaxIdBySite(site);
+        if (minPageId != null) {
+            for (long from = minPageId; from <= maxPageId; from += chunkSize) {
+                int to = (int) Math.min(from + chunkSize - 1, maxPageId);
+                indices += indexRepository.deleteBySiteAndPageIdBetween(site, (int) from, to);
+                pages += pageRepository.deleteBySiteAndIdBetween(site, (int) from, to);
+            }
+        }
+
+        long lemmas = 0;
+        Long minLemmaId = lemmaRepository.findMinIdBySite(site);
+        Long maxLemmaId = lemmaRepository.findMaxIdBySite(site);
+        if (minLemmaId != null) {
+            long lemmaChunk = (long) chunkSize * LEMMA_CHUNK_FACTOR;
+            for (long from = minLemmaId; from <= maxLemmaId; from += lemmaChunk) {
+                lemmas += lemmaRepository.deleteBySiteAndIdBetween(site, from, Math.min(from + lemmaChunk - 1, maxLemmaId));
+            }
+        }
+
+        Result result = new Result(pages, lemmas, indices, (System.nanoTime() - start) / 1_000_000);
+        log.info("Удалено содержимое сайта {} (site_id {}): {} страниц, {} лемм, {} записей индекса за {} мс",
+                site.getUrl(), site.getId(), result.pages(), result.lemmas(), result.indices(), result.millis());
+        return result;
+    }
+
+    /**
+     * Удаляет содержимое сайта и саму строку site.
+     */
+    public Result purge(SiteEntity site) {
+        Result result = purgeContent(site);
+        siteRepository.deleteById(site.getId());
+        return result;
+    }
+}
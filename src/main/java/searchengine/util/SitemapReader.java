@@ -0,0 +1,116 @@
+package searchengine.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.parser.Parser;
+import org.springframework.stereotype.Component;
+import searchengine.config.UserConfig;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Чтение /sitemap.xml сайта: адреса страниц и их priority. Индекс sitemap (sitemapindex) раскрывается
+ * на один уровень. Отсутствие или ошибка sitemap обход не останавливает — просто нет подсказок приоритета.
+ */
+@Slf4j
+@Component
+public class SitemapReader {
+
+    private static final int MAX_URLS = 50_000;
+    private static final int MAX_SITEMAPS = 20;
+
+    private final UserConfig userConfig;
+    private final HostRateLimiter hostRateLimiter;
+
+    public SitemapReader(UserConfig userConfig, HostRateLimiter hostRateLimiter) {
+        this.userConfig = userConfig;
+        this.hostRateLimiter = hostRateLimiter;
+    }
+
+    /**
+     * @return URL страницы → priority из sitemap; только страницы внутри siteUrl
+     */
+    public Map<String, Double> read(String siteUrl) {
+        Map<String, Double> pages = new LinkedHashMap<>();
+        Deque<String> sitemaps = new ArrayDeque<>();
+        sitemaps.add(siteUrl.endsWith("/") ? siteUrl + "sitemap.xml" : siteUrl + "/sitemap.xml");
+        int fetched = 0;
+        while (!sitemaps.isEmpty() && fetched < MAX_SITEMAPS && pages.size() < MAX_URLS) {
+            String sitemapUrl = sitemaps.poll();
+            Document doc = fetch(sitemapUrl);
+            fetched++;
+            if (doc == null) {
+                continue;
+            }
+            if (fetched == 1) {
+                for (Element loc : doc.select("sitemapindex > sitemap > loc")) {
+                    sitemaps.add(loc.text().trim());
+                }
+            }
+            for (Element url : doc.select("urlset > url")) {
+                String loc = url.selectFirst("loc") == null ? "" : url.selectFirst("loc").text().trim();
+                if (!loc.startsWith(siteUrl) || pages.size() >= MAX_URLS) {
+                    continue;
+                }
+                pages.merge(loc, priority(url.selectFirst("priority")), Math::max);
+            }
+        }
+        if (!pages.isEmpty()) {
+            log.info("Sitemap сайта {}: {} страниц", siteUrl, pages.size());
+        }
+        return pages;
+    }
+
+    private Document fetch(String url) {
+        HostRateLimiter.Permit permit;
+        try {
+            permit = hostRateLimiter.acquire(url);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        HostRateLimiter.Outcome outcome = HostRateLimiter.Outcome.ERROR;
+        String retryAfter = null;
+        try {
+            Connection.Response response = Jsoup.connect(url)
+                    .userAgent(userConfig.getAgent())
+                    .referrer(userConfig.getReferer())
+                    .timeout(hostRateLimiter.timeoutMillis(url))
+                    .ignoreHttpErrors(true)
+                    .ignoreContentType(true)
+                    .parser(Parser.xmlParser())
+                    .execute();
+            if (response.statusCode() == 429 || response.statusCode() == 503) {
+                outcome = HostRateLimiter.Outcome.THROTTLED;
+                retryAfter = response.header("Retry-After");
+                return null;
+            }
+            outcome = HostRateLimiter.Outcome.OK;
+            return response.statusCode() >= 400 ? null : response.parse();
+        } catch (IOException e) {
+            log.debug("Sitemap {} недоступен: {}", url, e.getMessage());
+            return null;
+        } finally {
+            hostRateLimiter.release(permit, outcome, retryAfter);
+        }
+    }
+
+    private static double priority(Element element) {
+        if (element == null) {
+            return CrawlFrontier.DEFAULT_PRIORITY;
+        }
+        try {
+            double value = Double.parseDouble(element.text().trim());
+            return Math.max(0, Math.min(1, value));
+        } catch (NumberFormatException e) {
+            return CrawlFrontier.DEFAULT_PRIORITY;
+        }
+    }
+}
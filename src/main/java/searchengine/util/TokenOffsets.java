@@ -0,0 +1,105 @@
+package searchengine.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Разметка видимого текста страницы: для каждого слова смещение, длина и id леммы (0 — слово без леммы).
+ * Хранится как тройки varint, смещения — разностью с предыдущим словом.
+ */
+public final class TokenOffsets {
+
+    private static final TokenOffsets EMPTY = new TokenOffsets(new int[0], new int[0], new long[0]);
+
+    private final int[] starts;
+    private final int[] lengths;
+    private final long[] lemmaIds;
+
+    private TokenOffsets(int[] starts, int[] lengths, long[] lemmaIds) {
+        this.starts = starts;
+        this.lengths = lengths;
+        this.lemmaIds = lemmaIds;
+    }
+
+    public static byte[] encode(List<LemmaFinder.WordToken> tokens, Map<String, Long> lemmaIds) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(tokens.size() * 4);
+        int previous = 0;
+        for (LemmaFinder.WordToken token : tokens) {
+            Long lemmaId = token.lemma() == null ? null : lemmaIds.get(token.lemma());
+            writeVarLong(out, token.start() - previous);
+            writeVarLong(out, token.length());
+            writeVarLong(out, lemmaId == null ? 0 : lemmaId);
+            previous = token.start();
+        }
+        return out.toByteArray();
+    }
+
+    public static TokenOffsets decode(byte[] data) {
+        if (data == null || data.length == 0) {
+            return EMPTY;
+        }
+        int capacity = data.length / 3 + 1;
+        int[] starts = new int[capacity];
+        int[] lengths = new int[capacity];
+        long[] lemmaIds = new long[capacity];
+        int count = 0;
+        int previous = 0;
+        int[] cursor = {0};
+
+        while (cursor[0] < data.length) {
+            previous += (int) readVarLong(data, cursor);
+            starts[count] = previous;
+            lengths[count] = (int) readVarLong(data, cursor);
+            lemmaIds[count] = readVarLong(data, cursor);
+            count++;
+        }
+        return new TokenOffsets(Arrays.copyOf(starts, count), Arrays.copyOf(lengths, count),
+                Arrays.copyOf(lemmaIds, count));
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    public int start(int token) {
+        return starts[token];
+    }
+
+    public int end(int token) {
+        return starts[token] + lengths[token];
+    }
+
+    public long lemmaId(int token) {
+        return lemmaIds[token];
+    }
+
+    /**
+     * Номер первого слова, начинающегося не раньше offset (или size(), если таких нет).
+     */
+    public int firstAtOrAfter(int offset) {
+        int index = Arrays.binarySearch(starts, offset);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(byte[] data, int[] cursor) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[cursor[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0 && cursor[0] < data.length);
+        return value;
+    }
+}
@@ -5,12 +5,10 @@ import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 
 import org.springframework.dao.DataIntegrityViolationException;
 import searchengine.config.UserConfig;
 import searchengine.model.IndexEntity;
-import searchengine.model.LemmaEntity;
 import searchengine.model.PageEntity;
 import searchengine.model.SiteEntity;
 import searchengine.model.Status;
@@ -20,149 +18,217 @@ import searchengine.repositories.PageRepository;
 import searchengine.repositories.SiteRepository;
 
 import java.io.IOException;
-import java.io.Serial;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.RecursiveTask;
 
+/**
+ * Обработчик обхода сайта: берет страницы из общей {@link CrawlFrontier}, скачивает, индексирует и
+ * добавляет найденные ссылки обратно в очередь. На сайт запускается несколько обработчиков;
+ * отмена задачи и исчерпание бюджета страниц останавливают их через очередь.
+ */
 @Slf4j
-public class WebPageIndexerTask extends RecursiveTask<Void> {
+public class WebPageIndexerTask implements Runnable {
 
-    @Serial
-    private static final long serialVersionUID = 1L;
-
-    private final String url;
     private final SiteEntity site;
+    private final CrawlFrontier frontier;
     private final PageRepository pageRepository;
     private final SiteRepository siteRepository;
     private final UserConfig userConfig;
     private final LemmaFinder lemmaFinder;
     private final LemmaRepository lemmaRepository;
     private final IndexRepository indexRepository;
+    private final CrawlerMetrics crawlerMetrics;
+    private final HostRateLimiter hostRateLimiter;
+    private final IndexingJob job;
 
-    private final Set<String> visitedUrls;
-    private final ConcurrentMap<String, LemmaEntity> lemmaCache;
-    private final ConcurrentMap<String, Boolean> pageCache;
+    private final CrawlLemmaCache lemmaCache;
 
-    public WebPageIndexerTask(String url, SiteEntity site, PageRepository pageRepository, SiteRepository siteRepository,
-                              UserConfig userConfig, LemmaFinder lemmaFinder, LemmaRepository lemmaRepository,
-                              IndexRepository indexRepository, ConcurrentMap<String, Boolean> pageCache,
-                              ConcurrentMap<String, LemmaEntity> lemmaCache) {
-        this.url = url;
+    public WebPageIndexerTask(SiteEntity site, CrawlFrontier frontier, PageRepository pageRepository,
+                              SiteRepository siteRepository, UserConfig userConfig, LemmaFinder lemmaFinder,
+                              LemmaRepository lemmaRepository, IndexRepository indexRepository,
+                              CrawlerMetrics crawlerMetrics, HostRateLimiter hostRateLimiter,
+                              IndexingJob job, CrawlLemmaCache lemmaCache) {
         this.site = site;
+        this.frontier = frontier;
         this.pageRepository = pageRepository;
         this.siteRepository = siteRepository;
         this.userConfig = userConfig;
         this.lemmaFinder = lemmaFinder;
         this.lemmaRepository = lemmaRepository;
         this.indexRepository = indexRepository;
-        this.visitedUrls = ConcurrentHashMap.newKeySet();
-        this.pageCache = pageCache;
+        this.crawlerMetrics = crawlerMetrics;
+        this.hostRateLimiter = hostRateLimiter;
+        this.job = job;
         this.lemmaCache = lemmaCache;
     }
 
+    /**
+     * Ошибка страницы с БД останавливает весь обход сайта: очередь закрывается, исключение уходит в задачу.
+     */
     @Override
-    protected Void compute() {
+    public void run() {
+        CrawlFrontier.Candidate candidate;
         try {
-            if (Thread.currentThread().isInterrupted()) {
-                log.info("Индексация прервана для URL: {}", url);
-                site.setStatus(Status.FAILED);
-                site.setStatusTime(Timestamp.valueOf(LocalDateTime.now()));
-                siteRepository.save(site);
-                return null;
+            while ((candidate = frontier.poll(job::isCancelled)) != null) {
+                try {
+                    process(candidate);
+                } catch (RuntimeException e) {
+                    frontier.abort();
+                    throw e;
+                } finally {
+                    frontier.done();
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            frontier.abort();
+        }
+    }
 
-            if (!visitedUrls.add(url) || pageCache.containsKey(url)) {
-                return null;
+    private void process(CrawlFrontier.Candidate candidate) {
+        String url = candidate.url();
+        try {
+            Connection.Response response = fetch(url);
+            if (job.isCancelled()) {
+                return;
             }
 
-            Connection.Response response = Jsoup.connect(url)
-                    .userAgent(userConfig.getAgent())
-                    .referrer(userConfig.getReferer())
-                    .timeout(10000)
-                    .execute();
-
-            if (isValidStatusCode(response.statusCode())) {
+            if (isValidStatusCode(url, response.statusCode())) {
                 Document doc = response.parse();
                 savePage(url, response.statusCode(), doc.outerHtml());
-                Elements links = doc.select("a[href]");
-                Set<WebPageIndexerTask> tasks = new HashSet<>();
-
-                for (Element link : links) {
+                if (job.isCancelled()) {
+                    return;
+                }
+                for (Element link : doc.select("a[href]")) {
                     String childUrl = link.absUrl("href");
-                    if (isValidUrl(childUrl) && !visitedUrls.contains(childUrl)) {
-                        tasks.add(new WebPageIndexerTask(childUrl, site, pageRepository, siteRepository, userConfig,
-                                lemmaFinder, lemmaRepository, indexRepository, pageCache, lemmaCache));
+                    if (isValidUrl(childUrl)) {
+                        frontier.offer(childUrl, candidate.depth() + 1, CrawlFrontier.DEFAULT_PRIORITY);
                     }
                 }
-
-                invokeAll(tasks);
             }
         } catch (IOException e) {
             log.error("Error processing URL: {}", url, e);
             saveError(site, e.getMessage());
-        } finally {
-            addDelay();
         }
-        return null;
     }
 
-    private void savePage(String url, int statusCode, String content) {
-        if (!isValidStatusCode(statusCode)) {
-            return;
+    /**
+     * Скачивание с учетом лимита хоста. Ответы 429/503 и таймауты повторяются до maxRetries раз:
+     * повтор ждет разрешения, пока не истечет пауза хоста (Retry-After).
+     */
+    private Connection.Response fetch(String url) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            HostRateLimiter.Permit permit;
+            try {
+                permit = hostRateLimiter.acquire(url);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Ожидание лимита хоста прервано");
+            }
+            boolean retry = attempt < hostRateLimiter.maxRetries() && !job.isCancelled();
+            long start = System.nanoTime();
+            String status = "error";
+            HostRateLimiter.Outcome outcome = HostRateLimiter.Outcome.ERROR;
+            String retryAfter = null;
+            try {
+                Connection.Response response = Jsoup.connect(url)
+                        .userAgent(userConfig.getAgent())
+                        .referrer(userConfig.getReferer())
+                        .timeout(hostRateLimiter.timeoutMillis(url))
+                        .ignoreHttpErrors(true)
+                        .execute();
+                status = String.valueOf(response.statusCode());
+                if (response.statusCode() == 429 || response.statusCode() == 503) {
+                    outcome = HostRateLimiter.Outcome.THROTTLED;
+                    retryAfter = response.header("Retry-After");
+                    if (retry) {
+                        continue;
+                    }
+                } else {
+                    outcome = HostRateLimiter.Outcome.OK;
+                }
+                return response;
+            } catch (SocketTimeoutException e) {
+                outcome = HostRateLimiter.Outcome.TIMEOUT;
+                if (retry) {
+                    continue;
+                }
+                throw e;
+            } finally {
+                hostRateLimiter.release(permit, outcome, retryAfter);
+                crawlerMetrics.recordFetch(site.getUrl(), status, System.nanoTime() - start);
+            }
         }
+    }
 
+    /**
+     * Лемматизация и id лемм идут до записи страницы, чтобы сохранить ее вместе со смещениями токенов
+     * одним INSERT, без повторной записи content. Частоты лемм учитываются в кэше до записи, поэтому
+     * уже сохраненный путь пропускается заранее, а при ошибке записи страницы или ее индекса прирост
+     * частот откатывается и частично записанная страница удаляется.
+     */
+    private void savePage(String url, int statusCode, String content) {
+        crawlerMetrics.pendingWrites(site.getUrl()).incrementAndGet();
         try {
+            String path = url.replace(site.getUrl(), "");
+            if (pageRepository.existsBySiteAndPath(site, path)) {
+                log.warn("Страница уже существует: {} для сайта: {}", url, site.getUrl());
+                return;
+            }
+            List<LemmaFinder.WordToken> tokens = crawlerMetrics.timeLemmatization(site.getUrl(),
+                    () -> lemmaFinder.tokenize(lemmaFinder.cleanHtml(content)));
+            Map<String, List<Integer>> positions = lemmaFinder.groupPositions(tokens);
+            Map<String, Integer> counts = new HashMap<>(positions.size() * 2);
+            positions.keySet().forEach(lemma -> counts.put(lemma, 1));
+            Map<String, Long> lemmaIds = lemmaCache.apply(site, counts);
+
             PageEntity page = new PageEntity();
-            page.setPath(url.replace(site.getUrl(), ""));
+            page.setPath(path);
             page.setCode(statusCode);
             page.setContent(content);
+            page.setContentHash(ContentHash.of(content));
             page.setSite(site);
             page.setStatus(Status.INDEXED);
-
-            pageRepository.save(page);
-            pageCache.put(url, true);
-
-            Map<String, Integer> lemmas = lemmaFinder.collectLemmas(lemmaFinder.cleanHtml(content));
-            updateLemmasAndIndices(lemmas, page);
-        } catch (DataIntegrityViolationException e) {
-            log.warn("Страница уже существует: {} для сайта: {}", url, site.getUrl());
+            page.setTokenOffsets(TokenOffsets.encode(tokens, lemmaIds));
+            try {
+                pageRepository.save(page);
+                saveIndices(positions, lemmaIds, page);
+            } catch (RuntimeException e) {
+                counts.replaceAll((lemma, count) -> -count);
+                lemmaCache.apply(site, counts);
+                if (page.getId() != 0) {
+                    pageRepository.deleteById(page.getId());
+                }
+                if (e instanceof DataIntegrityViolationException) {
+                    // Тот же путь успел записать другой поток обхода
+                    log.warn("Страница уже существует: {} для сайта: {}", url, site.getUrl());
+                    return;
+                }
+                throw e;
+            }
+            crawlerMetrics.pageIndexed(site.getUrl());
+            job.pageIndexed();
+        } finally {
+            crawlerMetrics.pendingWrites(site.getUrl()).decrementAndGet();
         }
     }
 
-    private void updateLemmasAndIndices(Map<String, Integer> lemmas, PageEntity page) {
-        Map<LemmaEntity, Integer> lemmaFrequencyMap = new HashMap<>();
-
-        for (Map.Entry<String, Integer> entry : lemmas.entrySet()) {
-            String lemmaText = entry.getKey();
-            int frequency = entry.getValue();
-
-            LemmaEntity lemma = lemmaCache.computeIfAbsent(lemmaText, key ->
-                    lemmaRepository.findByLemmaAndSite(key, page.getSite()).orElse(new LemmaEntity())
-            );
-            lemma.setLemma(lemmaText);
-            lemma.setFrequency(lemma.getFrequency() + frequency);
-            lemma.setSite(page.getSite());
-            lemmaFrequencyMap.put(lemma, lemmaFrequencyMap.getOrDefault(lemma, 0) + frequency);
-        }
-
-        lemmaRepository.saveAll(lemmaCache.values());
-
+    private void saveIndices(Map<String, List<Integer>> lemmas, Map<String, Long> lemmaIds, PageEntity page) {
         List<IndexEntity> indexEntities = new ArrayList<>();
-        for (Map.Entry<LemmaEntity, Integer> entry : lemmaFrequencyMap.entrySet()) {
-            LemmaEntity lemma = entry.getKey();
-            int frequency = entry.getValue();
+        for (Map.Entry<String, List<Integer>> entry : lemmas.entrySet()) {
+            List<Integer> positions = entry.getValue();
 
             IndexEntity indexEntity = new IndexEntity();
             indexEntity.setPage(page);
-            indexEntity.setLemma(lemma);
-            indexEntity.setRanking((float) frequency);
+            indexEntity.setLemma(lemmaRepository.getReferenceById(lemmaIds.get(entry.getKey())));
+            indexEntity.setRanking((float) positions.size());
+            indexEntity.setPositions(PositionCodec.encode(positions));
             indexEntities.add(indexEntity);
         }
-        indexRepository.saveAll(indexEntities);
+        crawlerMetrics.timeWrite("index", indexEntities.size(), () -> indexRepository.saveAll(indexEntities));
     }
 
     private void saveError(SiteEntity site, String error) {
@@ -172,15 +238,7 @@ public class WebPageIndexerTask extends RecursiveTask<Void> {
         siteRepository.save(site);
     }
 
-    private void addDelay() {
-        try {
-            Thread.sleep(100);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-    }
-
-    private boolean isValidStatusCode(int statusCode) {
+    private boolean isValidStatusCode(String url, int statusCode) {
         if (statusCode >= 400 && statusCode < 600) {
             log.warn("Не индексируем страницу с ошибочным HTTP-кодом {}: {}", statusCode, url);
             return false;
@@ -0,0 +1,67 @@
+package searchengine.bench;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import searchengine.Application;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Запуск приложения для нагрузочных прогонов: встроенная H2 в режиме MySQL вместо внешней базы
+ * и список сайтов из аргументов вместо application.yaml. Корпус прогоны пишут прямо в репозитории, мимо
+ * IndexUpdates, поэтому снимок индекса выключен, а его путь уведен во временный каталог, чтобы не задеть
+ * файл рабочего экземпляра.
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String database, Map<String, String> sites, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:" + database + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=create",
+                "--spring.jpa.show-sql=false",
+                "--server.port=0",
+                "--search-settings.snapshot-enabled=false",
+                "--search-settings.snapshot-path=" + Path.of(System.getProperty("java.io.tmpdir"),
+                        "searchengine-bench-" + database + ".seg"),
+                "--logging.level.searchengine=WARN"
+        ));
+        int index = 0;
+        for (Map.Entry<String, String> site : sites.entrySet()) {
+            args.add("--indexing-settings.sites[" + index + "].url=" + site.getKey());
+            args.add("--indexing-settings.sites[" + index + "].name=" + site.getValue());
+            index++;
+        }
+        args.addAll(List.of(extraArgs));
+        return SpringApplication.run(Application.class, args.toArray(String[]::new));
+    }
+
+    /**
+     * Аргументы вида --name=value; флаг без значения считается равным "true".
+     */
+    static Map<String, String> options(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Неизвестный аргумент: " + arg);
+            }
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        return options;
+    }
+}
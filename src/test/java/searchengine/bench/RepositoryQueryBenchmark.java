@@ -0,0 +1,327 @@
+package searchengine.bench;
+
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import searchengine.model.SiteEntity;
+import searchengine.repositories.IndexRepository;
+import searchengine.repositories.LemmaRepository;
+import searchengine.repositories.PageRepository;
+import searchengine.repositories.SiteRepository;
+import searchengine.util.PositionCodec;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Регрессионный прогон запросов репозиториев на корпусах разного размера (по умолчанию 10 000, 100 000
+ * и 1 000 000 записей index_link). Для каждого запроса снимается медиана времени и план выполнения (EXPLAIN);
+ * прогон завершается с ненулевым кодом, если медиана превысила бюджет из bench/query-budgets.tsv
+ * или план содержит полный просмотр index_link или lemma. В mvn verify уровень 10 000 проверяется без бюджетов
+ * времени, только по планам ({@link RepositoryQueryPlanIT}).
+ * <p>
+ * Параметры: --postings (10000,100000,1000000), --runs (5), --seed (42),
+ * --without-indexes (удалить составные индексы перед замерами, чтобы увидеть разницу).
+ */
+public final class RepositoryQueryBenchmark {
+
+    private static final int SITES = 2;
+    private static final int POSTINGS_PER_PAGE = 100;
+    private static final int BATCH_SIZE = 10_000;
+    private static final int WARMUP_RUNS = 2;
+    private static final Pattern FULL_SCAN = Pattern.compile("PUBLIC\\.(INDEX_LINK|LEMMA)\\.tableScan");
+    private static final List<String> COMPOSITE_INDEXES = List.of("idx_index_lemma_page", "idx_lemma_lemma_site");
+
+    private RepositoryQueryBenchmark() {
+    }
+
+    private record QueryCase(String name, String explainSql, Supplier<?> query) {
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> options = BenchmarkApplication.options(args);
+        List<Integer> scales = Arrays.stream(options.getOrDefault("postings", "10000,100000,1000000").split(","))
+                .map(String::trim)
+                .map(Integer::valueOf)
+                .toList();
+        int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        boolean withoutIndexes = Boolean.parseBoolean(options.getOrDefault("without-indexes", "false"));
+
+        List<String> violations = run(scales, runs, seed, withoutIndexes, true);
+        if (violations.isEmpty()) {
+            System.out.println("\nВсе запросы укладываются в бюджеты");
+            return;
+        }
+        System.out.println("\nПревышены бюджеты:");
+        violations.forEach(violation -> System.out.println("  " + violation));
+        System.exit(1);
+    }
+
+    /**
+     * Замеряет запросы на корпусах заданных размеров.
+     *
+     * @param checkBudgets сверять медианы с бюджетами; без этого нарушением считается только полный просмотр
+     * @return нарушения бюджетов и планов; пустой список, если их нет
+     */
+    static List<String> run(List<Integer> scales, int runs, long seed, boolean withoutIndexes, boolean checkBudgets) {
+        Map<String, Double> budgets = checkBudgets ? loadBudgets() : Map.of();
+
+        List<String> violations = new ArrayList<>();
+        for (int postings : scales) {
+            Map<String, String> sites = new HashMap<>();
+            for (int site = 1; site <= SITES; site++) {
+                sites.put(siteUrl(site), "Site " + site);
+            }
+            try (ConfigurableApplicationContext context = BenchmarkApplication.start("repository" + postings, sites)) {
+                JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+                int vocabulary = generate(jdbc, postings, seed);
+                if (withoutIndexes) {
+                    COMPOSITE_INDEXES.forEach(index -> jdbc.execute("DROP INDEX IF EXISTS " + index));
+                }
+                System.out.printf(Locale.ROOT, "%n=== %d записей index_link, %d страниц, словарь %d лемм на сайт%s ===%n",
+                        postings, pageCount(postings), vocabulary, withoutIndexes ? ", без составных индексов" : "");
+
+                for (QueryCase queryCase : queryCases(context, vocabulary)) {
+                    double median = measure(queryCase.query(), runs);
+                    String plan = String.join("\n", jdbc.query("EXPLAIN " + queryCase.explainSql(),
+                            (rs, row) -> rs.getString(1)));
+                    Double budget = budgets.get(queryCase.name() + "@" + postings);
+
+                    System.out.printf(Locale.ROOT, "%n%-20s медиана %8.2f мс, бюджет %s%n", queryCase.name(), median,
+                            budget == null ? "не задан" : String.format(Locale.ROOT, "%.0f мс", budget));
+                    System.out.println(plan);
+
+                    if (budget != null && median > budget) {
+                        violations.add(String.format(Locale.ROOT, "%s@%d: %.2f мс > %.0f мс",
+                                queryCase.name(), postings, median, budget));
+                    }
+                    Matcher scan = FULL_SCAN.matcher(plan);
+                    if (scan.find()) {
+                        violations.add(String.format(Locale.ROOT, "%s@%d: полный просмотр %s",
+                                queryCase.name(), postings, scan.group(1)));
+                    }
+                }
+            }
+        }
+        return violations;
+    }
+
+    private static List<QueryCase> queryCases(ConfigurableApplicationContext context, int vocabulary) {
+        PageRepository pageRepository = context.getBean(PageRepository.class);
+        IndexRepository indexRepository = context.getBean(IndexRepository.class);
+        LemmaRepository lemmaRepository = context.getBean(LemmaRepository.class);
+        SiteEntity site = context.getBean(SiteRepository.class).findByUrlAndLiveTrue(siteUrl(1)).orElseThrow();
+
+        List<String> frequent = List.of(lemma(0), lemma(1), lemma(2));
+        String rare = lemma(vocabulary / 2);
+        List<Integer> pageIds = pageRepository.findPageIdsByLemmasAndSite(List.of(lemma(0)), site.getUrl(), 1)
+                .stream().limit(100).toList();
+        String frequentSql = frequent.stream().map(lemma -> "'" + lemma + "'").collect(Collectors.joining(", "));
+        String pageIdsSql = pageIds.isEmpty() ? "0"
+                : pageIds.stream().map(String::valueOf).collect(Collectors.joining(", "));
+
+        return List.of(
+                new QueryCase("pageIdsByLemmas",
+                        "SELECT p.id FROM page p JOIN site s ON s.id = p.site_id "
+                                + "JOIN index_link i ON i.page_id = p.id JOIN lemma l ON l.id = i.lemma_id "
+                                + "WHERE l.lemma IN (" + frequentSql + ") AND s.url = '" + site.getUrl() + "' AND s.live = TRUE "
+                                + "GROUP BY p.id HAVING COUNT(DISTINCT l.lemma) = " + frequent.size(),
+                        () -> pageRepository.findPageIdsByLemmasAndSite(frequent, site.getUrl(), frequent.size())),
+                new QueryCase("pageIdsByRareLemma",
+                        "SELECT p.id FROM page p JOIN site s ON s.id = p.site_id "
+                                + "JOIN index_link i ON i.page_id = p.id JOIN lemma l ON l.id = i.lemma_id "
+                                + "WHERE l.lemma IN ('" + rare + "') AND s.url = '" + site.getUrl() + "' AND s.live = TRUE "
+                                + "GROUP BY p.id HAVING COUNT(DISTINCT l.lemma) = 1",
+                        () -> pageRepository.findPageIdsByLemmasAndSite(List.of(rare), site.getUrl(), 1)),
+                new QueryCase("postingsByPages",
+                        "SELECT i.page_id, l.id, l.lemma, i.ranking, i.positions FROM index_link i "
+                                + "JOIN lemma l ON l.id = i.lemma_id "
+                                + "WHERE i.page_id IN (" + pageIdsSql + ") AND l.lemma IN (" + frequentSql + ")",
+                        () -> indexRepository.findPostingsByPageIdsAndLemmas(pageIds, frequent)),
+                new QueryCase("pageCountBySite",
+                        "SELECT COUNT(*) FROM page WHERE site_id = " + site.getId(),
+                        () -> pageRepository.countBySite(site)),
+                new QueryCase("lemmaCountBySite",
+                        "SELECT COUNT(*) FROM lemma WHERE site_id = " + site.getId(),
+                        () -> lemmaRepository.countBySite(site)),
+                new QueryCase("countByLemma",
+                        "SELECT COUNT(*) FROM lemma l JOIN site s ON s.id = l.site_id "
+                                + "WHERE l.lemma = '" + lemma(0) + "' AND s.live = TRUE",
+                        () -> lemmaRepository.countByLemma(lemma(0))),
+                new QueryCase("lemmaByLemmaAndSite",
+                        "SELECT * FROM lemma WHERE lemma = '" + lemma(0) + "' AND site_id = " + site.getId(),
+                        () -> lemmaRepository.findByLemmaAndSite(lemma(0), site))
+        );
+    }
+
+    private static double measure(Supplier<?> query, int runs) {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            query.get();
+        }
+        long[] timings = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            query.get();
+            timings[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(timings);
+        return timings[runs / 2] / 1e6;
+    }
+
+    /**
+     * Корпус пишется напрямую через JDBC: страницы делятся между сайтами поровну, на каждой странице
+     * POSTINGS_PER_PAGE различных лемм, выбранных по закону Ципфа, так что первые леммы словаря встречаются
+     * почти везде, а хвост — редко.
+     *
+     * @return размер словаря каждого сайта
+     */
+    private static int generate(JdbcTemplate jdbc, int postings, long seed) {
+        int pages = pageCount(postings);
+        int vocabulary = Math.max(POSTINGS_PER_PAGE * 5, postings / 40);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        for (int site = 1; site <= SITES; site++) {
+            jdbc.update("INSERT INTO site (id, status, status_time, url, name, live) VALUES (?, 'INDEXED', ?, ?, ?, TRUE)",
+                    site, now, siteUrl(site), "Site " + site);
+        }
+
+        List<Object[]> pageRows = new ArrayList<>(BATCH_SIZE);
+        for (int page = 1; page <= pages; page++) {
+            pageRows.add(new Object[]{page, siteOf(page), "/p/" + page, 200,
+                    "<html><body>Страница " + page + "</body></html>", "INDEXED"});
+            if (pageRows.size() == BATCH_SIZE) {
+                insertPages(jdbc, pageRows);
+            }
+        }
+        insertPages(jdbc, pageRows);
+
+        List<Object[]> lemmaRows = new ArrayList<>(BATCH_SIZE);
+        for (int site = 1; site <= SITES; site++) {
+            for (int lemma = 0; lemma < vocabulary; lemma++) {
+                lemmaRows.add(new Object[]{(long) (site - 1) * vocabulary + lemma + 1, site, lemma(lemma), 0});
+                if (lemmaRows.size() == BATCH_SIZE) {
+                    insertLemmas(jdbc, lemmaRows);
+                }
+            }
+        }
+        insertLemmas(jdbc, lemmaRows);
+
+        double[] cumulative = zipfCumulative(vocabulary);
+        Random random = new Random(seed);
+        List<Object[]> indexRows = new ArrayList<>(BATCH_SIZE);
+        int indexId = 0;
+        int perPage = Math.min(POSTINGS_PER_PAGE, Math.max(1, postings / pages));
+        for (int page = 1; page <= pages && indexId < postings; page++) {
+            Set<Integer> lemmas = new LinkedHashSet<>();
+            while (lemmas.size() < perPage) {
+                lemmas.add(pick(random, cumulative));
+            }
+            int site = siteOf(page);
+            int position = 0;
+            for (int lemma : lemmas) {
+                if (indexId == postings) {
+                    break;
+                }
+                long lemmaId = (long) (site - 1) * vocabulary + lemma + 1;
+                indexRows.add(new Object[]{++indexId, page, lemmaId, 1.0f, PositionCodec.encode(List.of(position++))});
+                if (indexRows.size() == BATCH_SIZE) {
+                    insertPostings(jdbc, indexRows);
+                }
+            }
+        }
+
+        insertPostings(jdbc, indexRows);
+        jdbc.update("UPDATE lemma l SET frequency = (SELECT COUNT(*) FROM index_link i WHERE i.lemma_id = l.id)");
+        jdbc.execute("ANALYZE");
+        return vocabulary;
+    }
+
+    private static void insertPages(JdbcTemplate jdbc, List<Object[]> rows) {
+        jdbc.batchUpdate("INSERT INTO page (id, site_id, path, code, content, status) VALUES (?, ?, ?, ?, ?, ?)", rows);
+        rows.clear();
+    }
+
+    private static void insertLemmas(JdbcTemplate jdbc, List<Object[]> rows) {
+        jdbc.batchUpdate("INSERT INTO lemma (id, site_id, lemma, frequency) VALUES (?, ?, ?, ?)", rows);
+        rows.clear();
+    }
+
+    private static void insertPostings(JdbcTemplate jdbc, List<Object[]> rows) {
+        jdbc.batchUpdate("INSERT INTO index_link (id, page_id, lemma_id, ranking, positions) VALUES (?, ?, ?, ?, ?)",
+                rows);
+        rows.clear();
+    }
+
+    private static int pageCount(int postings) {
+        return Math.max(SITES, postings / POSTINGS_PER_PAGE);
+    }
+
+    private static int siteOf(int page) {
+        return (page - 1) % SITES + 1;
+    }
+
+    private static String siteUrl(int site) {
+        return "https://site" + site + ".bench.example";
+    }
+
+    private static String lemma(int index) {
+        return "лемма" + index;
+    }
+
+    private static double[] zipfCumulative(int size) {
+        double[] cumulative = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < size; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int pick(Random random, double[] cumulative) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1);
+    }
+
+    private static Map<String, Double> loadBudgets() {
+        try (InputStream in = RepositoryQueryBenchmark.class.getResourceAsStream("/bench/query-budgets.tsv")) {
+            if (in == null) {
+                throw new IllegalStateException("Не найден ресурс /bench/query-budgets.tsv");
+            }
+            Map<String, Double> budgets = new HashMap<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\t");
+                budgets.put(fields[0] + "@" + fields[1], Double.valueOf(fields[2]));
+            }
+            return budgets;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package searchengine.bench;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Уровень 10 000 записей index_link из {@link RepositoryQueryBenchmark} в фазе integration-test: сборка падает,
+ * если план запроса перешел на полный просмотр index_link или lemma. Бюджеты времени здесь не сверяются —
+ * они зависят от машины и проверяются в ручном прогоне из профиля benchmark.
+ */
+class RepositoryQueryPlanIT {
+
+    private static final int POSTINGS = 10_000;
+    private static final int RUNS = 1;
+    private static final long SEED = 42;
+
+    @Test
+    void queriesUseIndexes() {
+        List<String> violations = RepositoryQueryBenchmark.run(List.of(POSTINGS), RUNS, SEED, false, false);
+
+        assertTrue(violations.isEmpty(), () -> "Планы запросов с полным просмотром:\n  " + String.join("\n  ", violations));
+    }
+}